@@ -19,90 +19,268 @@ package net.minder.cuber;
 
 import org.apache.commons.io.FilenameUtils;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.HashSet;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 public class Box extends Stack {
 
   private static final String COLUMN_SEP = "\t";
   private static final String SOURCE_SEP = ",";
 
-  private static final int COLUMN_NAME = 0;
-  private static final int COLUMN_MANA_ANY = 1;
-  private static final int COLUMN_MANA_WHITE = 2;
-  private static final int COLUMN_MANA_BLUE = 3;
-  private static final int COLUMN_MANA_BLACK = 4;
-  private static final int COLUMN_MANA_RED = 5;
-  private static final int COLUMN_MANA_GREEN = 6;
-  private static final int COLUMN_MANA_TOTAL = 7;
-  private static final int COLUMN_TYPE = 8;
-  private static final int COLUMN_SUBTYPE = 9;
-  private static final int COLUMN_OFFENSE = 10;
-  private static final int COLUMN_DEFENSE = 11;
-  private static final int COLUMN_STRENGTH = 12;
-  private static final int COLUMN_SET = 13;
-  private static final int COLUMN_CARD = 14;
-  private static final int COLUMN_RARITY = 15;
-  private static final int COLUMN_COUNT = 16;
-  private static final int COLUMN_SOURCES = 17;
+  static final int COLUMN_NAME = 0;
+  static final int COLUMN_MANA_ANY = 1;
+  static final int COLUMN_MANA_WHITE = 2;
+  static final int COLUMN_MANA_BLUE = 3;
+  static final int COLUMN_MANA_BLACK = 4;
+  static final int COLUMN_MANA_RED = 5;
+  static final int COLUMN_MANA_GREEN = 6;
+  static final int COLUMN_MANA_TOTAL = 7;
+  static final int COLUMN_TYPE = 8;
+  static final int COLUMN_SUBTYPE = 9;
+  static final int COLUMN_OFFENSE = 10;
+  static final int COLUMN_DEFENSE = 11;
+  static final int COLUMN_STRENGTH = 12;
+  static final int COLUMN_SET = 13;
+  static final int COLUMN_CARD = 14;
+  static final int COLUMN_RARITY = 15;
+  static final int COLUMN_COUNT = 16;
+  static final int COLUMN_SOURCES = 17;
+  static final int COLUMN_TOTAL = 18;
+
+  // The box columns holding the numeric values of the catalog, in catalog column order.
+  static final int[] VALUE_COLUMNS = {
+      COLUMN_MANA_ANY, COLUMN_MANA_WHITE, COLUMN_MANA_BLUE, COLUMN_MANA_BLACK, COLUMN_MANA_RED, COLUMN_MANA_GREEN,
+      COLUMN_MANA_TOTAL, COLUMN_OFFENSE, COLUMN_DEFENSE, COLUMN_STRENGTH };
+
+  // Tsv files larger than this are parsed in chunks of this size when loading in parallel.
+  private static final int CHUNK_SIZE = 8 * 1024 * 1024;
+
+  private static final String[] COPY_LABELS = new String[ 100 ];
+  static {
+    for( int i=0; i<COPY_LABELS.length; i++ ) {
+      COPY_LABELS[ i ] = String.format( "%02d", i );
+    }
+  }
+
+  private Catalog catalog;
 
   public Box( String name ) {
     super( name );
   }
 
-  public static Box load( File tsvFile ) throws IOException {
-    Box box = new Box( FilenameUtils.getBaseName( tsvFile.getName() ) );
-    BufferedReader reader = new BufferedReader( new FileReader( tsvFile ) );
-    String line = "";
-    while( line != null ) {
-      line = reader.readLine();
-      if( line != null ) {
-        if( !line.isEmpty() && !line.startsWith( "Name" ) ) {
-          String[] columns = line.split( COLUMN_SEP );
-          String name = columns[COLUMN_NAME];
-          String anyMana = columns[COLUMN_MANA_ANY];
-          String whiteMana = columns[COLUMN_MANA_WHITE];
-          String blueMana = columns[COLUMN_MANA_BLUE];
-          String blackMana = columns[COLUMN_MANA_BLACK];
-          String redMana = columns[COLUMN_MANA_RED];
-          String greenMana = columns[COLUMN_MANA_GREEN];
-          String totalMana = columns[COLUMN_MANA_TOTAL];
-          String type = columns[COLUMN_TYPE];
-          String subType = columns[COLUMN_SUBTYPE];
-          String offense = columns[COLUMN_OFFENSE];
-          String defense = columns[COLUMN_DEFENSE];
-          String strength = columns[COLUMN_STRENGTH];
-          String set = columns[COLUMN_SET];
-          String num = columns[ COLUMN_CARD ];
-          String rarity = columns[COLUMN_RARITY];
-          String countStr = columns.length > COLUMN_COUNT ? columns[COLUMN_COUNT] : "1";
-          String sourcesStr = columns.length > COLUMN_SOURCES ? columns[COLUMN_SOURCES] : "";
-          int count = Utils.parseInt( countStr, 0 );
-          int copy = 0;
-          Set<String> sources = parseSources( sourcesStr );
-          for( String source: sources ) {
-            Card card = new Card(
-                set, num, String.format( "%02d", copy++ ), name, type, subType, rarity,
-                anyMana, whiteMana, blueMana, blackMana, redMana, greenMana, totalMana,
-                offense, defense, strength, source );
-            box.addCard( card );
-          }
-          for( int i=sources.size(); i < count; i++ ) {
-            Card card = new Card(
-                set, num, String.format( "%02d", copy++ ), name, type, subType, rarity,
-                anyMana, whiteMana, blueMana, blackMana, redMana, greenMana, totalMana,
-                offense, defense, strength, "" );
-            box.addCard( card );
+  /**
+   * Returns the catalog of the cards loaded into the box, or null if it has not been loaded.
+   */
+  public Catalog getCatalog() {
+    return catalog;
+  }
+
+  /**
+   * Loads a box from either a tsv file or a file compiled by {@link BoxFile#compile}.
+   */
+  public static Box load( File file ) throws IOException {
+    Box box = new Box( FilenameUtils.getBaseName( file.getName() ) );
+    load( file, box, null, null );
+    return box;
+  }
+
+  /**
+   * Loads the cards of the sets and types given into the box.  Rows of any other set or type are skipped before a
+   * card is made.  Null sets or types match every row.
+   */
+  public static void load( File file, Box box, Set<String> sets, Set<String> types ) throws IOException {
+    load( Collections.singletonList( file ), box, sets, types, null );
+  }
+
+  /**
+   * Loads the cards of the files, in order, into the box.  A box is loaded once and all of its cards share one
+   * catalog, which this load builds and finishes.  With parallel workers the files are read in parallel.
+   */
+  public static void load( List<File> files, Box box, Set<String> sets, Set<String> types,
+      Workers workers ) throws IOException {
+    if( box.catalog != null ) {
+      throw new IllegalStateException( String.format( "Box %s is already loaded.", box.getName() ) );
+    }
+    final Catalog catalog = new Catalog();
+    final List<Card> cards = new ArrayList<Card>();
+    if( workers == null || !workers.isParallel() ) {
+      RowSink sink = new RowSink() {
+        public void row( String[] columns, int count, double[] values ) {
+          addRow( catalog, cards, columns, count, values );
+        }
+      };
+      for( File file: files ) {
+        read( file, sets, types, sink );
+      }
+    } else {
+      read( files, sets, types, workers, catalog, cards );
+    }
+    catalog.finish();
+    box.catalog = catalog;
+    box.addCards( cards );
+  }
+
+  /**
+   * Reads the files in parallel, one task per file or per chunk of a large tsv file.  The cards are made once
+   * every file is read, in file order, so the result is the same as reading the files one after another.
+   * Cards are not made by the tasks because the catalog numbers card definitions, and codes their rarities and
+   * types, in the order they are made and the inventory buckets follow those codes.
+   */
+  private static void read( List<File> files, final Set<String> sets, final Set<String> types, Workers workers,
+      Catalog catalog, List<Card> cards ) throws IOException {
+    // Large tsv files are split at line ends and the lines of each chunk counted so errors give the right line.
+    final List<File> chunkFiles = new ArrayList<File>();
+    final List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+    List<Callable<Integer>> counts = new ArrayList<Callable<Integer>>();
+    List<Callable<RowBuffer>> tasks = new ArrayList<Callable<RowBuffer>>();
+    for( final File file: files ) {
+      if( file.length() > CHUNK_SIZE && !BoxParser.isCompressed( file ) && !BoxFile.isCompiled( file ) ) {
+        for( final ByteBuffer chunk: split( BoxParser.map( file ) ) ) {
+          chunkFiles.add( file );
+          chunks.add( chunk );
+          counts.add( new Callable<Integer>() {
+            public Integer call() {
+              return BoxParser.countLines( chunk );
+            }
+          } );
+        }
+      } else {
+        tasks.add( new Callable<RowBuffer>() {
+          public RowBuffer call() throws IOException {
+            RowBuffer rows = new RowBuffer();
+            read( file, sets, types, rows );
+            return rows;
           }
+        } );
+      }
+    }
+    List<Integer> lines = workers.invoke( counts );
+    int linesBefore = 0;
+    for( int c=0; c<chunks.size(); c++ ) {
+      final int first = c > 0 && chunkFiles.get( c ) == chunkFiles.get( c - 1 ) ? linesBefore : 0;
+      final File file = chunkFiles.get( c );
+      final ByteBuffer chunk = chunks.get( c );
+      linesBefore = first + lines.get( c );
+      tasks.add( new Callable<RowBuffer>() {
+        public RowBuffer call() throws IOException {
+          RowBuffer rows = new RowBuffer();
+          read( new BoxParser( file.getPath(), chunk, first ), sets, types, rows );
+          return rows;
         }
+      } );
+    }
+    List<RowBuffer> results = invoke( workers, tasks );
+
+    // Put the results back in file order, whole files and chunks were queued separately.
+    int whole = 0;
+    int chunked = tasks.size() - chunks.size();
+    for( int f=0, c=0; f<files.size(); f++ ) {
+      if( c < chunks.size() && chunkFiles.get( c ) == files.get( f ) ) {
+        for( ; c<chunks.size() && chunkFiles.get( c ) == files.get( f ); c++ ) {
+          results.get( chunked + c ).addCards( catalog, cards );
+        }
+      } else {
+        results.get( whole++ ).addCards( catalog, cards );
       }
     }
-    reader.close();
-    return box;
+  }
+
+  /**
+   * Passes each row of the sets and types given, from either a tsv or a compiled file, to the sink.
+   */
+  static void read( File file, Set<String> sets, Set<String> types, RowSink sink ) throws IOException {
+    if( BoxFile.isCompiled( file ) ) {
+      BoxFile.read( file, sets, types, sink );
+    } else {
+      BoxParser parser = BoxParser.open( file );
+      try {
+        read( parser, sets, types, sink );
+      } finally {
+        parser.close();
+      }
+    }
+  }
+
+  static void read( BoxParser parser, Set<String> sets, Set<String> types, RowSink sink ) throws IOException {
+    String[] columns = new String[ COLUMN_TOTAL ];
+    double[] values = new double[ Catalog.VALUE_COUNT ];
+    while( parser.next() ) {
+      // The set and type are interned so testing them allocates nothing.
+      if( ( sets != null && !sets.contains( parser.getString( COLUMN_SET ) ) ) ||
+          ( types != null && !types.contains( parser.getString( COLUMN_TYPE ) ) ) ) {
+        continue;
+      }
+      getColumns( parser, columns );
+      getValues( parser, values );
+      sink.row( columns, parser.getInt( COLUMN_COUNT, 1 ), values );
+    }
+  }
+
+  /**
+   * Receives rows as all of their columns, the copy count and the parsed {@link #VALUE_COLUMNS}.
+   * The arrays are reused for the next row.
+   */
+  interface RowSink {
+    void row( String[] columns, int count, double[] values );
+  }
+
+  /**
+   * Fills in the text of every column of the parser's row.  Only the name is not interned.
+   */
+  static void getColumns( BoxParser parser, String[] columns ) {
+    for( int c=0; c<COLUMN_TOTAL; c++ ) {
+      columns[ c ] = c == COLUMN_NAME ? parser.getText( c ) : parser.getString( c );
+    }
+  }
+
+  static void getValues( BoxParser parser, double[] values ) {
+    for( int v=0; v<VALUE_COLUMNS.length; v++ ) {
+      values[ v ] = parser.getDouble( VALUE_COLUMNS[ v ] );
+    }
+  }
+
+  /**
+   * Adds the row to the catalog and makes one card per copy of it, all sharing one definition.
+   * The values are the parsed {@link #VALUE_COLUMNS} or null to parse them here.
+   */
+  static void addRow( Catalog catalog, List<Card> cards, String[] columns, int count, double[] values ) {
+    String name = columns[COLUMN_NAME];
+    String anyMana = columns[COLUMN_MANA_ANY];
+    String whiteMana = columns[COLUMN_MANA_WHITE];
+    String blueMana = columns[COLUMN_MANA_BLUE];
+    String blackMana = columns[COLUMN_MANA_BLACK];
+    String redMana = columns[COLUMN_MANA_RED];
+    String greenMana = columns[COLUMN_MANA_GREEN];
+    String totalMana = columns[COLUMN_MANA_TOTAL];
+    String type = columns[COLUMN_TYPE];
+    String subType = columns[COLUMN_SUBTYPE];
+    String offense = columns[COLUMN_OFFENSE];
+    String defense = columns[COLUMN_DEFENSE];
+    String strength = columns[COLUMN_STRENGTH];
+    String set = columns[COLUMN_SET];
+    String num = columns[ COLUMN_CARD ];
+    String rarity = columns[COLUMN_RARITY];
+    CardDefinition definition = catalog.add(
+        set, num, name, type, subType, rarity,
+        anyMana, whiteMana, blueMana, blackMana, redMana, greenMana, totalMana,
+        offense, defense, strength, values );
+    int copy = 0;
+    List<String> sources = parseSources( columns[COLUMN_SOURCES] );
+    for( String source: sources ) {
+      Card card = catalog.addCopy( definition, getCopyLabel( copy++ ), source );
+      cards.add( card );
+    }
+    for( int i=sources.size(); i < count; i++ ) {
+      Card card = catalog.addCopy( definition, getCopyLabel( copy++ ), "" );
+      cards.add( card );
+    }
   }
 
 //  public String toString() {
@@ -122,15 +300,90 @@ public class Box extends Stack {
         sep, sep, sep, sep, sep, sep, sep, sep, sep, sep, sep, sep, sep, sep, sep, sep, sep );
   }
 
-  private static Set<String> parseSources( String str ) {
-    String[] parts = str.split( SOURCE_SEP );
-    Set<String> set = new HashSet<String>();
-    for( String source: parts ) {
-      if( !source.trim().isEmpty() ) {
-        set.add( source );
+  // Splits the buffer into chunks of about the chunk size that each end at a line end.
+  private static List<ByteBuffer> split( ByteBuffer buffer ) {
+    List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+    int from = buffer.position();
+    int limit = buffer.limit();
+    while( from < limit ) {
+      int to = (int)Math.min( (long)from + CHUNK_SIZE, limit );
+      while( to < limit && buffer.get( to - 1 ) != '\n' ) {
+        to++;
+      }
+      ByteBuffer chunk = buffer.duplicate();
+      chunk.limit( to );
+      chunk.position( from );
+      chunks.add( chunk );
+      from = to;
+    }
+    return chunks;
+  }
+
+  private static <T> List<T> invoke( Workers workers, List<Callable<T>> tasks ) throws IOException {
+    try {
+      return workers.invoke( tasks );
+    } catch( IllegalStateException e ) {
+      if( e.getCause() instanceof IOException ) {
+        throw (IOException)e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Keeps the rows passed to it until the cards can be made, packed into flat arrays that grow as needed.
+   * The parsers intern the text of every column but the name so most columns only cost a reference.
+   */
+  static class RowBuffer implements RowSink {
+
+    private static final int INITIAL_ROWS = 256;
+
+    private String[] columns = new String[ INITIAL_ROWS * COLUMN_TOTAL ];
+    private int[] counts = new int[ INITIAL_ROWS ];
+    private double[] values = new double[ INITIAL_ROWS * Catalog.VALUE_COUNT ];
+    private int rows;
+
+    public void row( String[] columns, int count, double[] values ) {
+      if( rows == counts.length ) {
+        int capacity = rows * 2;
+        this.columns = Arrays.copyOf( this.columns, capacity * COLUMN_TOTAL );
+        this.counts = Arrays.copyOf( this.counts, capacity );
+        this.values = Arrays.copyOf( this.values, capacity * Catalog.VALUE_COUNT );
+      }
+      System.arraycopy( columns, 0, this.columns, rows * COLUMN_TOTAL, COLUMN_TOTAL );
+      this.counts[ rows ] = count;
+      System.arraycopy( values, 0, this.values, rows * Catalog.VALUE_COUNT, Catalog.VALUE_COUNT );
+      rows++;
+    }
+
+    void addCards( Catalog catalog, List<Card> cards ) {
+      String[] row = new String[ COLUMN_TOTAL ];
+      double[] value = new double[ Catalog.VALUE_COUNT ];
+      for( int r=0; r<rows; r++ ) {
+        System.arraycopy( columns, r * COLUMN_TOTAL, row, 0, COLUMN_TOTAL );
+        System.arraycopy( values, r * Catalog.VALUE_COUNT, value, 0, Catalog.VALUE_COUNT );
+        addRow( catalog, cards, row, counts[ r ], value );
+      }
+    }
+
+  }
+
+  static String getCopyLabel( int copy ) {
+    return copy < COPY_LABELS.length ? COPY_LABELS[ copy ] : String.format( "%02d", copy );
+  }
+
+  // The distinct sources in the order they are listed.
+  private static List<String> parseSources( String str ) {
+    if( str.isEmpty() ) {
+      return Collections.emptyList();
+    }
+    List<String> list = new ArrayList<String>();
+    for( String source: str.split( SOURCE_SEP ) ) {
+      if( !source.trim().isEmpty() && !list.contains( source ) ) {
+        list.add( source );
       }
     }
-    return set;
+    return list;
   }
 
 }
@@ -0,0 +1,210 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.minder.cuber;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiled form of one or more box tsv files that loads without parsing a row.
+ * Every text column is held as an index into one table of distinct strings, the copy count as an int and the numeric
+ * values the catalog needs as doubles, each column stored contiguously with a fixed width so a row is found by
+ * offset alone.  The file is memory mapped when loaded.
+ * <p/>
+ * The layout is the magic number and version, the string and row counts, the string table as length prefixed utf-8,
+ * then one int column per text column, the count column and one double column per value column.
+ */
+public class BoxFile {
+
+  private static final int MAGIC = 0x43554258;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 16;
+
+  // Every box column other than the count is text.
+  private static final int[] TEXT_COLUMNS = {
+      Box.COLUMN_NAME, Box.COLUMN_MANA_ANY, Box.COLUMN_MANA_WHITE, Box.COLUMN_MANA_BLUE, Box.COLUMN_MANA_BLACK,
+      Box.COLUMN_MANA_RED, Box.COLUMN_MANA_GREEN, Box.COLUMN_MANA_TOTAL, Box.COLUMN_TYPE, Box.COLUMN_SUBTYPE,
+      Box.COLUMN_OFFENSE, Box.COLUMN_DEFENSE, Box.COLUMN_STRENGTH, Box.COLUMN_SET, Box.COLUMN_CARD,
+      Box.COLUMN_RARITY, Box.COLUMN_SOURCES };
+
+  /**
+   * Returns true if the file starts with the magic number of a compiled box.
+   */
+  public static boolean isCompiled( File file ) throws IOException {
+    if( file.length() < HEADER_SIZE ) {
+      return false;
+    }
+    DataInputStream in = new DataInputStream( new FileInputStream( file ) );
+    try {
+      return in.readInt() == MAGIC;
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Compiles the rows of the tsv files, in order, into one file.
+   */
+  public static void compile( List<File> tsvFiles, File file ) throws IOException {
+    final List<String> strings = new ArrayList<String>();
+    final Map<String,Integer> codes = new HashMap<String,Integer>();
+    final List<int[]> texts = new ArrayList<int[]>();
+    final List<Integer> counts = new ArrayList<Integer>();
+    final List<double[]> values = new ArrayList<double[]>();
+    for( File tsvFile: tsvFiles ) {
+      Box.read( tsvFile, null, null, new Box.RowSink() {
+        public void row( String[] columns, int count, double[] value ) {
+          int[] text = new int[ TEXT_COLUMNS.length ];
+          for( int t=0; t<TEXT_COLUMNS.length; t++ ) {
+            text[ t ] = encode( columns[ TEXT_COLUMNS[ t ] ], strings, codes );
+          }
+          texts.add( text );
+          counts.add( count );
+          values.add( value.clone() );
+        }
+      } );
+    }
+    int rows = texts.size();
+    File temp = new File( file.getPath() + ".tmp" );
+    DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( temp ) ) );
+    try {
+      out.writeInt( MAGIC );
+      out.writeInt( VERSION );
+      out.writeInt( strings.size() );
+      out.writeInt( rows );
+      for( String string: strings ) {
+        byte[] bytes = string.getBytes( StandardCharsets.UTF_8 );
+        out.writeInt( bytes.length );
+        out.write( bytes );
+      }
+      for( int t=0; t<TEXT_COLUMNS.length; t++ ) {
+        for( int r=0; r<rows; r++ ) {
+          out.writeInt( texts.get( r )[ t ] );
+        }
+      }
+      for( int r=0; r<rows; r++ ) {
+        out.writeInt( counts.get( r ) );
+      }
+      for( int v=0; v<Catalog.VALUE_COUNT; v++ ) {
+        for( int r=0; r<rows; r++ ) {
+          out.writeDouble( values.get( r )[ v ] );
+        }
+      }
+    } finally {
+      out.close();
+    }
+    Files.move( temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+  }
+
+  /**
+   * Passes the rows of the sets and types given to the sink, or every row for null sets or types.
+   * The filter is evaluated once per distinct string so a skipped row costs two int reads.
+   */
+  static void read( File file, Set<String> sets, Set<String> types, Box.RowSink sink ) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile( file, "r" );
+    try {
+      MappedByteBuffer buffer = raf.getChannel().map( FileChannel.MapMode.READ_ONLY, 0, raf.length() );
+      if( buffer.getInt() != MAGIC ) {
+        throw new IllegalStateException( String.format( "%s is not a compiled box.", file ) );
+      }
+      int version = buffer.getInt();
+      if( version != VERSION ) {
+        throw new IllegalStateException( String.format( "Compiled box %s has unsupported version %d.", file, version ) );
+      }
+      String[] strings = new String[ buffer.getInt() ];
+      int rows = buffer.getInt();
+      byte[] bytes = new byte[ 64 ];
+      for( int s=0; s<strings.length; s++ ) {
+        int length = buffer.getInt();
+        if( length > bytes.length ) {
+          bytes = new byte[ length ];
+        }
+        buffer.get( bytes, 0, length );
+        strings[ s ] = new String( bytes, 0, length, StandardCharsets.UTF_8 );
+      }
+      boolean[] setMatches = match( strings, sets );
+      boolean[] typeMatches = match( strings, types );
+      int textBase = buffer.position();
+      int countBase = textBase + TEXT_COLUMNS.length * rows * 4;
+      int valueBase = countBase + rows * 4;
+      int setBase = textBase + indexOf( Box.COLUMN_SET ) * rows * 4;
+      int typeBase = textBase + indexOf( Box.COLUMN_TYPE ) * rows * 4;
+      String[] columns = new String[ Box.COLUMN_TOTAL ];
+      double[] values = new double[ Catalog.VALUE_COUNT ];
+      for( int r=0; r<rows; r++ ) {
+        if( !setMatches[ buffer.getInt( setBase + r * 4 ) ] || !typeMatches[ buffer.getInt( typeBase + r * 4 ) ] ) {
+          continue;
+        }
+        for( int t=0; t<TEXT_COLUMNS.length; t++ ) {
+          columns[ TEXT_COLUMNS[ t ] ] = strings[ buffer.getInt( textBase + ( t * rows + r ) * 4 ) ];
+        }
+        int count = buffer.getInt( countBase + r * 4 );
+        for( int v=0; v<values.length; v++ ) {
+          values[ v ] = buffer.getDouble( valueBase + ( v * rows + r ) * 8 );
+        }
+        sink.row( columns, count, values );
+      }
+    } finally {
+      raf.close();
+    }
+  }
+
+  private static boolean[] match( String[] strings, Set<String> values ) {
+    boolean[] matches = new boolean[ strings.length ];
+    for( int s=0; s<strings.length; s++ ) {
+      matches[ s ] = values == null || values.contains( strings[ s ] );
+    }
+    return matches;
+  }
+
+  private static int indexOf( int column ) {
+    for( int t=0; t<TEXT_COLUMNS.length; t++ ) {
+      if( TEXT_COLUMNS[ t ] == column ) {
+        return t;
+      }
+    }
+    throw new IllegalStateException( String.format( "Column %d is not text.", column ) );
+  }
+
+  private static int encode( String string, List<String> strings, Map<String,Integer> codes ) {
+    Integer code = codes.get( string );
+    if( code == null ) {
+      code = strings.size();
+      strings.add( string );
+      codes.put( string, code );
+    }
+    return code.intValue();
+  }
+
+}
@@ -0,0 +1,382 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.minder.cuber;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streaming parser of the rows of a box tsv held in a byte buffer.
+ * Fields are found in place as offsets into the buffer and only turned into strings or numbers when asked for.
+ * Numbers are parsed straight from the bytes and repeated strings, such as sets, types and rarities, are interned
+ * so each distinct value is decoded once.  Blank lines and the header line are skipped.
+ * <p/>
+ * A parser over a stream, such as a gzip file, holds only a window of the bytes that grows to fit the longest line.
+ */
+public class BoxParser {
+
+  private static final byte TAB = '\t';
+  private static final byte NEWLINE = '\n';
+  private static final byte RETURN = '\r';
+  private static final byte[] HEADER = { 'N', 'a', 'm', 'e' };
+
+  // Rows may stop after the rarity, the count and sources are optional.
+  private static final int REQUIRED_COLUMNS = Box.COLUMN_RARITY + 1;
+
+  private static final int INTERN_CAPACITY = 1024;
+  private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+  private static final String GZIP_SUFFIX = ".gz";
+
+  private String source;
+  private InputStream in;
+  private byte[] window;
+  private ByteBuffer buffer;
+  private int position;
+  private int limit;
+  private int line;
+  private int fields;
+  private int[] starts;
+  private int[] ends;
+  private byte[] scratch;
+  private byte[][] internKeys;
+  private String[] internValues;
+  private int internCount;
+
+  /**
+   * Parses the bytes from the position of the buffer up to its limit.  The source names it in errors.
+   */
+  public BoxParser( String source, ByteBuffer buffer ) {
+    this( source, buffer, 0 );
+  }
+
+  /**
+   * Parses part of a file, numbering its lines for errors on from the number of lines that come before it.
+   */
+  public BoxParser( String source, ByteBuffer buffer, int linesBefore ) {
+    this.source = source;
+    this.buffer = buffer;
+    this.position = buffer.position();
+    this.limit = buffer.limit();
+    this.line = linesBefore;
+    this.starts = new int[ Box.COLUMN_TOTAL ];
+    this.ends = new int[ Box.COLUMN_TOTAL ];
+    this.scratch = new byte[ 256 ];
+    this.internKeys = new byte[ INTERN_CAPACITY ][];
+    this.internValues = new String[ INTERN_CAPACITY ];
+  }
+
+  /**
+   * Parses the stream as it is read.  The parser closes the stream.
+   */
+  public BoxParser( String source, InputStream in ) {
+    this( source, ByteBuffer.wrap( new byte[ STREAM_BUFFER_SIZE ] ), 0 );
+    this.in = in;
+    this.window = buffer.array();
+    this.limit = 0;
+  }
+
+  /**
+   * Returns a parser that decompresses a .gz file as it reads it, otherwise one over the file mapped into memory.
+   */
+  public static BoxParser open( File file ) throws IOException {
+    if( isCompressed( file ) ) {
+      return new BoxParser( file.getPath(), new GZIPInputStream( new FileInputStream( file ), STREAM_BUFFER_SIZE ) );
+    }
+    return new BoxParser( file.getPath(), map( file ) );
+  }
+
+  public static boolean isCompressed( File file ) {
+    return file.getName().endsWith( GZIP_SUFFIX );
+  }
+
+  static ByteBuffer map( File file ) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile( file, "r" );
+    try {
+      return raf.getChannel().map( FileChannel.MapMode.READ_ONLY, 0, raf.length() );
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * Advances to the next card row, returning false at the end of the buffer.
+   */
+  public boolean next() throws IOException {
+    while( position < limit || fill() ) {
+      int start = position;
+      int end = start;
+      while( end < limit && buffer.get( end ) != NEWLINE ) {
+        end++;
+      }
+      if( end == limit && fill() ) {
+        // The line may go on past the window, look again now more of it is read.
+        continue;
+      }
+      position = end + 1;
+      line++;
+      if( end > start && buffer.get( end - 1 ) == RETURN ) {
+        end--;
+      }
+      if( end > start && !startsWith( start, end, HEADER ) ) {
+        split( start, end );
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Counts the line ends from the position of the buffer to its limit.
+   */
+  public static int countLines( ByteBuffer buffer ) {
+    int n = 0;
+    for( int i=buffer.position(), limit=buffer.limit(); i<limit; i++ ) {
+      if( buffer.get( i ) == NEWLINE ) {
+        n++;
+      }
+    }
+    return n;
+  }
+
+  public void close() throws IOException {
+    if( in != null ) {
+      in.close();
+      in = null;
+    }
+  }
+
+  public int getLine() {
+    return line;
+  }
+
+  public boolean isPresent( int column ) {
+    return column < fields && ends[ column ] > starts[ column ];
+  }
+
+  /**
+   * Returns the field decoded as a new string.  Use for values that are mostly distinct, such as names.
+   */
+  public String getText( int column ) {
+    if( column >= fields ) {
+      return "";
+    }
+    return decode( starts[ column ], ends[ column ] - starts[ column ] );
+  }
+
+  /**
+   * Returns the field as a string shared with every other field holding the same bytes.
+   */
+  public String getString( int column ) {
+    if( column >= fields ) {
+      return "";
+    }
+    int start = starts[ column ];
+    int length = ends[ column ] - start;
+    int mask = internKeys.length - 1;
+    int slot = hash( start, length ) & mask;
+    byte[] key;
+    while( ( key = internKeys[ slot ] ) != null ) {
+      if( matches( key, start, length ) ) {
+        return internValues[ slot ];
+      }
+      slot = ( slot + 1 ) & mask;
+    }
+    key = new byte[ length ];
+    for( int i=0; i<length; i++ ) {
+      key[ i ] = buffer.get( start + i );
+    }
+    String value = new String( key, StandardCharsets.UTF_8 );
+    internKeys[ slot ] = key;
+    internValues[ slot ] = value;
+    if( ++internCount * 2 > internKeys.length ) {
+      growIntern();
+    }
+    return value;
+  }
+
+  /**
+   * Returns the field as a number, or zero if it is empty or not a number.
+   */
+  public double getDouble( int column ) {
+    if( !isPresent( column ) ) {
+      return Metric.zero;
+    }
+    int i = starts[ column ];
+    int end = ends[ column ];
+    boolean negative = buffer.get( i ) == '-';
+    if( negative || buffer.get( i ) == '+' ) {
+      i++;
+    }
+    long whole = 0;
+    int digits = 0;
+    for( ; i<end && isDigit( buffer.get( i ) ) && digits<18; i++, digits++ ) {
+      whole = whole * 10 + ( buffer.get( i ) - '0' );
+    }
+    double value = whole;
+    if( i < end && buffer.get( i ) == '.' ) {
+      double scale = 1.0d;
+      for( i++; i<end && isDigit( buffer.get( i ) ) && digits<18; i++, digits++ ) {
+        whole = whole * 10 + ( buffer.get( i ) - '0' );
+        scale *= 10.0d;
+      }
+      value = whole / scale;
+    }
+    if( i < end || digits == 0 ) {
+      // Anything unusual, such as an exponent or a placeholder like *, goes the slow way.
+      return Catalog.parseValue( getText( column ) );
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+   * Returns the field as an int, or the default if it is empty, or zero if it is not a number.
+   */
+  public int getInt( int column, int d ) {
+    if( !isPresent( column ) ) {
+      return d;
+    }
+    int n = 0;
+    for( int i=starts[ column ]; i<ends[ column ]; i++ ) {
+      byte b = buffer.get( i );
+      if( !isDigit( b ) || i - starts[ column ] >= 9 ) {
+        return Utils.parseInt( getText( column ), 0 );
+      }
+      n = n * 10 + ( b - '0' );
+    }
+    return n;
+  }
+
+  // Moves the unread bytes to the front of the window and reads more after them.  Returns false at end of stream.
+  private boolean fill() throws IOException {
+    if( in == null ) {
+      return false;
+    }
+    int unread = limit - position;
+    if( unread == window.length ) {
+      byte[] larger = new byte[ window.length * 2 ];
+      System.arraycopy( window, position, larger, 0, unread );
+      window = larger;
+      buffer = ByteBuffer.wrap( window );
+    } else {
+      System.arraycopy( window, position, window, 0, unread );
+    }
+    position = 0;
+    limit = unread;
+    int n = in.read( window, limit, window.length - limit );
+    if( n < 0 ) {
+      close();
+      return false;
+    }
+    limit += n;
+    return true;
+  }
+
+  private void split( int start, int end ) {
+    fields = 0;
+    int from = start;
+    for( int i=start; i<=end && fields<Box.COLUMN_TOTAL; i++ ) {
+      if( i == end || buffer.get( i ) == TAB ) {
+        starts[ fields ] = from;
+        ends[ fields ] = i;
+        fields++;
+        from = i + 1;
+      }
+    }
+    if( fields < REQUIRED_COLUMNS ) {
+      throw new IllegalStateException( String.format(
+          "%s:%d:%d: Expected at least %d columns but found %d.",
+          source, line, fields + 1, REQUIRED_COLUMNS, fields ) );
+    }
+  }
+
+  private boolean startsWith( int start, int end, byte[] prefix ) {
+    if( end - start < prefix.length ) {
+      return false;
+    }
+    for( int i=0; i<prefix.length; i++ ) {
+      if( buffer.get( start + i ) != prefix[ i ] ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private String decode( int start, int length ) {
+    if( length > scratch.length ) {
+      scratch = new byte[ length ];
+    }
+    for( int i=0; i<length; i++ ) {
+      scratch[ i ] = buffer.get( start + i );
+    }
+    return new String( scratch, 0, length, StandardCharsets.UTF_8 );
+  }
+
+  private int hash( int start, int length ) {
+    int h = 0x811c9dc5;
+    for( int i=0; i<length; i++ ) {
+      h = ( h ^ buffer.get( start + i ) ) * 0x01000193;
+    }
+    return h ^ ( h >>> 16 );
+  }
+
+  private boolean matches( byte[] key, int start, int length ) {
+    if( key.length != length ) {
+      return false;
+    }
+    for( int i=0; i<length; i++ ) {
+      if( key[ i ] != buffer.get( start + i ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void growIntern() {
+    byte[][] keys = internKeys;
+    String[] values = internValues;
+    internKeys = new byte[ keys.length * 2 ][];
+    internValues = new String[ keys.length * 2 ];
+    int mask = internKeys.length - 1;
+    for( int k=0; k<keys.length; k++ ) {
+      if( keys[ k ] != null ) {
+        int h = 0x811c9dc5;
+        for( byte b: keys[ k ] ) {
+          h = ( h ^ b ) * 0x01000193;
+        }
+        int slot = ( h ^ ( h >>> 16 ) ) & mask;
+        while( internKeys[ slot ] != null ) {
+          slot = ( slot + 1 ) & mask;
+        }
+        internKeys[ slot ] = keys[ k ];
+        internValues[ slot ] = values[ k ];
+      }
+    }
+  }
+
+  private static boolean isDigit( byte b ) {
+    return b >= '0' && b <= '9';
+  }
+
+}
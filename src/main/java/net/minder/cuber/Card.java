@@ -33,15 +33,15 @@ public class Card {
   };
 
   public static final Attribute<Card, String> CID = new SimpleAttribute<Card, String>("cid") {
-    public String getValue( Card card, QueryOptions queryOptions ) { return card.cid; }
+    public String getValue( Card card, QueryOptions queryOptions ) { return card.definition.cid; }
   };
 
   public static final Attribute<Card, String> SET = new SimpleAttribute<Card, String>("set") {
-    public String getValue( Card card, QueryOptions queryOptions ) { return card.set; }
+    public String getValue( Card card, QueryOptions queryOptions ) { return card.definition.set; }
   };
 
   public static final Attribute<Card, String> NUM = new SimpleAttribute<Card, String>("num") {
-    public String getValue( Card card, QueryOptions queryOptions ) { return card.card; }
+    public String getValue( Card card, QueryOptions queryOptions ) { return card.definition.card; }
   };
 
   public static final Attribute<Card, String> COPY = new SimpleAttribute<Card, String>("copy") {
@@ -49,11 +49,11 @@ public class Card {
   };
 
   public static final Attribute<Card, String> NAME = new SimpleAttribute<Card, String>("name") {
-    public String getValue( Card card, QueryOptions queryOptions ) { return card.name; }
+    public String getValue( Card card, QueryOptions queryOptions ) { return card.definition.name; }
   };
 
   public static final Attribute<Card, String> TYPE = new SimpleAttribute<Card, String>("type") {
-    public String getValue( Card card, QueryOptions queryOptions ) { return card.type; }
+    public String getValue( Card card, QueryOptions queryOptions ) { return card.definition.type; }
   };
 
   public static final Attribute<Card, Double> CREATURE = new SimpleAttribute<Card, Double>(Stack.CREATURE) {
@@ -91,11 +91,11 @@ public class Card {
   };
 
   public static final Attribute<Card, String> SUBTYPE = new SimpleAttribute<Card, String>("subtype") {
-    public String getValue( Card card, QueryOptions queryOptions ) { return card.subType; }
+    public String getValue( Card card, QueryOptions queryOptions ) { return card.definition.subType; }
   };
 
   public static final Attribute<Card, String> RARITY = new SimpleAttribute<Card, String>("rarity") {
-    public String getValue( Card card, QueryOptions queryOptions ) { return card.rarity; }
+    public String getValue( Card card, QueryOptions queryOptions ) { return card.definition.rarity; }
   };
 
   public static final Attribute<Card, Double> COMMON = new SimpleAttribute<Card, Double>(Stack.COMMON) {
@@ -183,150 +183,117 @@ public class Card {
   public static Set<String> LAND_TYPES = new HashSet( Arrays.asList( "L", "BL" ) );
   public static Set<String> TOKEN_TYPES = new HashSet( Arrays.asList( "T", "TC", "TCA", "TC" ) );
 
+  public CardDefinition definition;
+  // The catalog of the load the card came from, which holds its values.
+  public Catalog catalog;
   public String id;
-  public String cid;
-  public String set;
-  public String card;
   public String copy;
-  public String name;
-  public String type;
-  public String subType;
-  public String rarity;
-  public String anyManaStr;
-  public String whiteManaStr;
-  public String blueManaStr;
-  public String blackManaStr;
-  public String redManaStr;
-  public String greenManaStr;
-  public String totalManaStr;
-  public String offenseStr;
-  public String defenseStr;
-  public String strengthStr;
   public String source;
-
-  public Card(
-      String set,
-      String card,
-      String copy,
-      String name,
-      String type,
-      String subType,
-      String rarity,
-      String anyMana,
-      String whiteMana,
-      String blueMana,
-      String blackMana,
-      String redMana,
-      String greenMana,
-      String totalMana,
-      String offense,
-      String defense,
-      String strength,
-      String source ) {
-    this.cid = set + "-" + card;
-    this.id = this.cid + "~" + copy;
-    this.set = set;
-    this.card = card;
+  // The catalog ordinal of the definition, shared by every copy.
+  public int ordinal;
+  // Unique to this copy within its catalog.
+  public int serial;
+
+  /**
+   * Creates a handle for one physical copy of a card.  Everything but the copy label and source is shared.
+   * Copies are made by {@link Catalog#addCopy} so each gets its own serial number.
+   */
+  Card( CardDefinition definition, String copy, String source, int serial ) {
+    this.definition = definition;
+    this.catalog = definition.catalog;
+    this.id = definition.cid + "~" + copy;
     this.copy = copy;
-    this.name = name;
-    this.type = type;
-    this.subType = subType;
-    this.rarity = rarity;
-    this.anyManaStr = anyMana;
-    this.whiteManaStr = whiteMana;
-    this.blueManaStr = blueMana;
-    this.blackManaStr = blackMana;
-    this.redManaStr = redMana;
-    this.greenManaStr = greenMana;
-    this.totalManaStr = totalMana;
-    this.offenseStr = offense;
-    this.defenseStr = defense;
-    this.strengthStr = strength;
     this.source = source;
+    this.ordinal = definition.ordinal;
+    this.serial = serial;
   }
 
   public double getCreature() {
-    return CREATURE_TYPES.contains( type ) ? Metric.one : Metric.zero;
+    return catalog.getValue( Catalog.CREATURE, ordinal );
   }
 
   public double getArtifact() {
-    return ARTIFACT_TYPES.contains( type ) ? Metric.one : Metric.zero;
+    return catalog.getValue( Catalog.ARTIFACT, ordinal );
   }
 
   public double getEnchantment() {
-    return ENCHANTMENT_TYPES.contains( type ) ? Metric.one : Metric.zero;
+    return catalog.getValue( Catalog.ENCHANTMENT, ordinal );
   }
 
   public double getInstant() {
-    return INSTANT_TYPES.contains( type ) ? Metric.one : Metric.zero;
+    return catalog.getValue( Catalog.INSTANT, ordinal );
   }
 
   public double getSourcery() {
-    return SORCERY_TYPES.contains( type ) ? Metric.one : Metric.zero;
+    return catalog.getValue( Catalog.SORCERY, ordinal );
   }
 
   public double getLand() {
-    return LAND_TYPES.contains( type ) ? Metric.one : Metric.zero;
+    return catalog.getValue( Catalog.LAND, ordinal );
   }
 
   public double getAnyMana() {
-    return Utils.parseDbl( anyManaStr, Metric.zero );
+    return catalog.getValue( Catalog.MULTI, ordinal );
   }
 
   public double getWhiteMana() {
-    return Utils.parseDbl( whiteManaStr, Metric.zero );
+    return catalog.getValue( Catalog.WHITE, ordinal );
   }
 
   public double getBlueMana() {
-    return Utils.parseDbl( blueManaStr, Metric.zero );
+    return catalog.getValue( Catalog.BLUE, ordinal );
   }
 
   public double getBlackMana() {
-    return Utils.parseDbl( blackManaStr, Metric.zero );
+    return catalog.getValue( Catalog.BLACK, ordinal );
   }
 
   public double getRedMana() {
-    return Utils.parseDbl( redManaStr, Metric.zero );
+    return catalog.getValue( Catalog.RED, ordinal );
   }
 
   public double getGreenMana() {
-    return Utils.parseDbl( greenManaStr, Metric.zero );
+    return catalog.getValue( Catalog.GREEN, ordinal );
   }
 
   public double getTotalMana() {
-    return Utils.parseDbl( totalManaStr, Metric.zero );
+    return catalog.getValue( Catalog.COST, ordinal );
   }
 
   public double getOffensiveStrength() {
-    return Utils.parseDbl( offenseStr, Metric.zero );
+    return catalog.getValue( Catalog.OFFENSE, ordinal );
   }
 
   public double getDefensiveStrength() {
-    return Utils.parseDbl( defenseStr, Metric.zero );
+    return catalog.getValue( Catalog.DEFENSE, ordinal );
   }
 
   public double getTotalStrength() {
-    return Utils.parseDbl( strengthStr, Metric.zero );
+    return catalog.getValue( Catalog.STRENGTH, ordinal );
   }
 
   public double getTotalWeight() {
-    return getTotalMana() + getTotalStrength();
+    return catalog.getValue( Catalog.WEIGHT, ordinal );
   }
 
   public double getCommon() {
-    return Card.COMMON_RARITY.equals( rarity ) ? Metric.one : Metric.zero;
+    return catalog.getValue( Catalog.COMMON, ordinal );
   }
 
   public double getUncommon() {
-    return Card.UNCOMMON_RARITY.equals( rarity ) ? Metric.one : Metric.zero;
+    return catalog.getValue( Catalog.UNCOMMON, ordinal );
   }
 
   public double getRare() {
-    return Card.RARE_RARITY.equals( rarity ) ? Metric.one : Metric.zero;
+    return catalog.getValue( Catalog.RARE, ordinal );
   }
 
   public double getMythic() {
-    return Card.MYTHIC_RARITY.equals( rarity ) ? Metric.one : Metric.zero;
+    return catalog.getValue( Catalog.MYTHIC, ordinal );
+  }
+
+  public double getValue( int column ) {
+    return catalog.getValue( column, ordinal );
   }
 
   public String toString() {
@@ -334,11 +301,12 @@ public class Card {
   }
 
   public String toString( String sep ) {
+    CardDefinition d = definition;
     return String.format(
         "%s%s%s%s%s%s%s%s%s%s%s%s%s%s%s%s%s%s%s%s%s%s%s%s%s%s%s%s%s%s%s%s%s%s%s",
-        set, sep, card, sep, copy, sep, name, sep, rarity, sep, type, sep, subType, sep,
-        anyManaStr, sep, whiteManaStr, sep, blueManaStr, sep, blackManaStr, sep, redManaStr, sep, greenManaStr, sep, totalManaStr, sep,
-        offenseStr, sep, defenseStr, sep, strengthStr, sep, source );
+        d.set, sep, d.card, sep, copy, sep, d.name, sep, d.rarity, sep, d.type, sep, d.subType, sep,
+        d.anyManaStr, sep, d.whiteManaStr, sep, d.blueManaStr, sep, d.blackManaStr, sep, d.redManaStr, sep, d.greenManaStr, sep, d.totalManaStr, sep,
+        d.offenseStr, sep, d.defenseStr, sep, d.strengthStr, sep, source );
   }
 
   public int hashCode() {
@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.minder.cuber;
+
+/**
+ * The immutable description of a card, shared by every physical copy of it.
+ * Definitions are made by their catalog, which holds their values once however many copies a box has.
+ */
+public class CardDefinition {
+
+  public final Catalog catalog;
+  public final String cid;
+  public final String set;
+  public final String card;
+  public final String name;
+  public final String type;
+  public final String subType;
+  public final String rarity;
+  public final String anyManaStr;
+  public final String whiteManaStr;
+  public final String blueManaStr;
+  public final String blackManaStr;
+  public final String redManaStr;
+  public final String greenManaStr;
+  public final String totalManaStr;
+  public final String offenseStr;
+  public final String defenseStr;
+  public final String strengthStr;
+  public final int ordinal;
+
+  CardDefinition(
+      Catalog catalog,
+      int ordinal,
+      String set,
+      String card,
+      String name,
+      String type,
+      String subType,
+      String rarity,
+      String anyMana,
+      String whiteMana,
+      String blueMana,
+      String blackMana,
+      String redMana,
+      String greenMana,
+      String totalMana,
+      String offense,
+      String defense,
+      String strength ) {
+    this.catalog = catalog;
+    this.ordinal = ordinal;
+    this.cid = set + "-" + card;
+    this.set = set;
+    this.card = card;
+    this.name = name;
+    this.type = type;
+    this.subType = subType;
+    this.rarity = rarity;
+    this.anyManaStr = anyMana;
+    this.whiteManaStr = whiteMana;
+    this.blueManaStr = blueMana;
+    this.blackManaStr = blackMana;
+    this.redManaStr = redMana;
+    this.greenManaStr = greenMana;
+    this.totalManaStr = totalMana;
+    this.offenseStr = offense;
+    this.defenseStr = defense;
+    this.strengthStr = strength;
+  }
+
+  public String toString() {
+    return cid;
+  }
+
+}
@@ -0,0 +1,298 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.minder.cuber;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar store of the numeric values of the card definitions of one load.
+ * Each definition is given an ordinal when it is added and its metric values are parsed exactly once into
+ * one primitive column per metric, shared by all of its copies.  Each copy is only given a serial number.
+ * A catalog is filled by a single thread while its box loads and is then finished, after which it never changes
+ * and may be read by any thread.
+ */
+public class Catalog {
+
+  public static final int MULTI = 0;
+  public static final int WHITE = 1;
+  public static final int BLUE = 2;
+  public static final int BLACK = 3;
+  public static final int RED = 4;
+  public static final int GREEN = 5;
+  public static final int COST = 6;
+  public static final int OFFENSE = 7;
+  public static final int DEFENSE = 8;
+  public static final int STRENGTH = 9;
+  public static final int CREATURE = 10;
+  public static final int SORCERY = 11;
+  public static final int ENCHANTMENT = 12;
+  public static final int INSTANT = 13;
+  public static final int ARTIFACT = 14;
+  public static final int LAND = 15;
+  public static final int COMMON = 16;
+  public static final int UNCOMMON = 17;
+  public static final int RARE = 18;
+  public static final int MYTHIC = 19;
+  public static final int WEIGHT = 20;
+
+  public static final String[] COLUMN_NAMES = {
+      Stack.MULTI, Stack.WHITE, Stack.BLUE, Stack.BLACK, Stack.RED, Stack.GREEN, Stack.COST,
+      Stack.OFFENSE, Stack.DEFENSE, Stack.STRENGTH,
+      Stack.CREATURE, Stack.SORCERY, Stack.ENCHANTMENT, Stack.INSTANT, Stack.ARTIFACT, Stack.LAND,
+      Stack.COMMON, Stack.UNCOMMON, Stack.RARE, Stack.MYTHIC,
+      Stack.WEIGHT };
+
+  public static final int COLUMN_COUNT = COLUMN_NAMES.length;
+
+  // The columns parsed from the card text, the rest are derived from the type and rarity.
+  public static final int VALUE_COUNT = STRENGTH + 1;
+
+  private static final Map<String,Integer> COLUMNS = new HashMap<String,Integer>();
+  static {
+    for( int i=0; i<COLUMN_COUNT; i++ ) {
+      COLUMNS.put( COLUMN_NAMES[ i ], i );
+    }
+  }
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private int size;
+  private int copies;
+  private CardDefinition[] definitions;
+  private double[][] values;
+  private int[] rarities;
+  private int[] types;
+  private long[] keys;
+  private boolean finished;
+  // Scratch space for the values of the card being added.
+  private double[] row;
+  private List<String> rarityNames;
+  private Map<String,Integer> rarityCodes;
+  private List<String> typeNames;
+  private Map<String,Integer> typeCodes;
+
+  public Catalog() {
+    this.size = 0;
+    this.copies = 0;
+    this.definitions = new CardDefinition[ INITIAL_CAPACITY ];
+    this.values = new double[ COLUMN_COUNT ][ INITIAL_CAPACITY ];
+    this.rarities = new int[ INITIAL_CAPACITY ];
+    this.types = new int[ INITIAL_CAPACITY ];
+    this.keys = new long[ INITIAL_CAPACITY ];
+    this.row = new double[ COLUMN_COUNT ];
+    this.rarityNames = new ArrayList<String>();
+    this.rarityCodes = new HashMap<String,Integer>();
+    this.typeNames = new ArrayList<String>();
+    this.typeCodes = new HashMap<String,Integer>();
+  }
+
+  public static int getColumn( String name ) {
+    Integer i = COLUMNS.get( name );
+    return i == null ? -1 : i.intValue();
+  }
+
+  /**
+   * Adds the definition of a card.  The values are already parsed, in catalog column order up to
+   * {@link #STRENGTH}, or null to parse them from the text.
+   */
+  CardDefinition add(
+      String set, String num, String name, String type, String subType, String rarity,
+      String anyMana, String whiteMana, String blueMana, String blackMana, String redMana, String greenMana,
+      String totalMana, String offense, String defense, String strength, double[] parsed ) {
+    checkOpen();
+    if( size == definitions.length ) {
+      grow();
+    }
+    int ordinal = size;
+    CardDefinition card = new CardDefinition( this, ordinal,
+        set, num, name, type, subType, rarity,
+        anyMana, whiteMana, blueMana, blackMana, redMana, greenMana, totalMana,
+        offense, defense, strength );
+    definitions[ ordinal ] = card;
+    double[] v = row;
+    if( parsed == null ) {
+      parse( card, v );
+    } else {
+      System.arraycopy( parsed, 0, v, 0, VALUE_COUNT );
+    }
+    derive( card, v );
+    for( int c=0; c<COLUMN_COUNT; c++ ) {
+      values[ c ][ ordinal ] = v[ c ];
+    }
+    rarities[ ordinal ] = encode( card.rarity, rarityNames, rarityCodes );
+    types[ ordinal ] = encode( card.type, typeNames, typeCodes );
+    keys[ ordinal ] = key( card.cid );
+    size++;
+    return card;
+  }
+
+  /**
+   * Makes a new physical copy of a definition of this catalog with the next serial number.
+   */
+  Card addCopy( CardDefinition definition, String copy, String source ) {
+    checkOpen();
+    if( definition.catalog != this ) {
+      throw new IllegalStateException( String.format( "Card %s is not in this catalog.", definition.cid ) );
+    }
+    return new Card( definition, copy, source, copies++ );
+  }
+
+  /**
+   * Ends loading.  Nothing more can be added so the catalog can be shared between threads.
+   */
+  void finish() {
+    finished = true;
+  }
+
+  public boolean isFinished() {
+    return finished;
+  }
+
+  private void checkOpen() {
+    if( finished ) {
+      throw new IllegalStateException( "Cannot add cards to a catalog that has finished loading." );
+    }
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * Returns the number of copies registered, one more than the highest serial number.
+   */
+  public int getCopyCount() {
+    return copies;
+  }
+
+  public CardDefinition getDefinition( int ordinal ) {
+    return definitions[ ordinal ];
+  }
+
+  public double getValue( int column, int ordinal ) {
+    return values[ column ][ ordinal ];
+  }
+
+  public int getRarity( int ordinal ) {
+    return rarities[ ordinal ];
+  }
+
+  public int getType( int ordinal ) {
+    return types[ ordinal ];
+  }
+
+  /**
+   * Returns the random key of the card used to hash where cards are dealt.
+   * Copies of the same card share a key because they are interchangeable.
+   */
+  public long getKey( int ordinal ) {
+    return keys[ ordinal ];
+  }
+
+  public int getRarityCount() {
+    return rarityNames.size();
+  }
+
+  public int getTypeCount() {
+    return typeNames.size();
+  }
+
+  public int getRarityCode( String name ) {
+    Integer code = rarityCodes.get( name );
+    return code == null ? -1 : code.intValue();
+  }
+
+  public int getTypeCode( String name ) {
+    Integer code = typeCodes.get( name );
+    return code == null ? -1 : code.intValue();
+  }
+
+  public String getRarityName( int code ) {
+    return rarityNames.get( code );
+  }
+
+  public String getTypeName( int code ) {
+    return typeNames.get( code );
+  }
+
+  private void grow() {
+    int capacity = definitions.length * 2;
+    definitions = Arrays.copyOf( definitions, capacity );
+    for( int c=0; c<COLUMN_COUNT; c++ ) {
+      values[ c ] = Arrays.copyOf( values[ c ], capacity );
+    }
+    rarities = Arrays.copyOf( rarities, capacity );
+    types = Arrays.copyOf( types, capacity );
+    keys = Arrays.copyOf( keys, capacity );
+  }
+
+  private static long key( String cid ) {
+    // FNV-1a over the characters then mixed so similar ids get unrelated keys.
+    long h = 0xcbf29ce484222325L;
+    for( int i=0; i<cid.length(); i++ ) {
+      h = ( h ^ cid.charAt( i ) ) * 0x100000001b3L;
+    }
+    return Utils.mix( h );
+  }
+
+  private static int encode( String name, List<String> names, Map<String,Integer> codes ) {
+    Integer code = codes.get( name );
+    if( code == null ) {
+      code = names.size();
+      names.add( name );
+      codes.put( name, code );
+    }
+    return code.intValue();
+  }
+
+  public static double parseValue( String s ) {
+    return Utils.parseDbl( s, Metric.zero );
+  }
+
+  private static void parse( CardDefinition card, double[] v ) {
+    v[ MULTI ] = parseValue( card.anyManaStr );
+    v[ WHITE ] = parseValue( card.whiteManaStr );
+    v[ BLUE ] = parseValue( card.blueManaStr );
+    v[ BLACK ] = parseValue( card.blackManaStr );
+    v[ RED ] = parseValue( card.redManaStr );
+    v[ GREEN ] = parseValue( card.greenManaStr );
+    v[ COST ] = parseValue( card.totalManaStr );
+    v[ OFFENSE ] = parseValue( card.offenseStr );
+    v[ DEFENSE ] = parseValue( card.defenseStr );
+    v[ STRENGTH ] = parseValue( card.strengthStr );
+  }
+
+  private static void derive( CardDefinition card, double[] v ) {
+    v[ CREATURE ] = Card.CREATURE_TYPES.contains( card.type ) ? Metric.one : Metric.zero;
+    v[ SORCERY ] = Card.SORCERY_TYPES.contains( card.type ) ? Metric.one : Metric.zero;
+    v[ ENCHANTMENT ] = Card.ENCHANTMENT_TYPES.contains( card.type ) ? Metric.one : Metric.zero;
+    v[ INSTANT ] = Card.INSTANT_TYPES.contains( card.type ) ? Metric.one : Metric.zero;
+    v[ ARTIFACT ] = Card.ARTIFACT_TYPES.contains( card.type ) ? Metric.one : Metric.zero;
+    v[ LAND ] = Card.LAND_TYPES.contains( card.type ) ? Metric.one : Metric.zero;
+    v[ COMMON ] = Card.COMMON_RARITY.equals( card.rarity ) ? Metric.one : Metric.zero;
+    v[ UNCOMMON ] = Card.UNCOMMON_RARITY.equals( card.rarity ) ? Metric.one : Metric.zero;
+    v[ RARE ] = Card.RARE_RARITY.equals( card.rarity ) ? Metric.one : Metric.zero;
+    v[ MYTHIC ] = Card.MYTHIC_RARITY.equals( card.rarity ) ? Metric.one : Metric.zero;
+    v[ WEIGHT ] = v[ COST ] + v[ STRENGTH ];
+  }
+
+}
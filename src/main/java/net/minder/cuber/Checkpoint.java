@@ -0,0 +1,252 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.minder.cuber;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Binary snapshot of an evolving population that a run can be resumed from.
+ * It holds the config, the state of the random number generator, the generation reached and, for each candidate,
+ * the pack of every card by card id.  Drafts are rebuilt from their assignments without being dealt again and
+ * the generator carries on from exactly where it was.
+ * <p/>
+ * The layout is the magic number and version, the config as key value pairs, the serialized generator, the
+ * generation, the pack count, the table of card ids and then one pack index per card id for each candidate, with -1
+ * for the pool.
+ */
+public class Checkpoint {
+
+  private static final int MAGIC = 0x43554252;
+  private static final int VERSION = 2;
+
+  private Properties properties;
+  private byte[] state;
+  private long generation;
+  private int packCount;
+  private String[] ids;
+  private List<short[]> candidates;
+
+  private Checkpoint() {
+  }
+
+  /**
+   * Captures the drafts and the state of the random number generator, which must be serializable.
+   */
+  public Checkpoint( Config config, Random random, long generation, List<Draft> drafts ) {
+    this.properties = new Properties();
+    for( String key: config.stringPropertyNames() ) {
+      properties.setProperty( key, config.getProperty( key ) );
+    }
+    this.state = serialize( random );
+    this.generation = generation;
+    this.packCount = config.getPackCount();
+    if( packCount > Short.MAX_VALUE ) {
+      throw new IllegalStateException( String.format(
+          "Cannot checkpoint %d packs, at most %d are supported.", packCount, Short.MAX_VALUE ) );
+    }
+    this.candidates = new ArrayList<short[]>( drafts.size() );
+    Inventory inventory = drafts.isEmpty() ? null : drafts.get( 0 ).getInventory();
+    int n = inventory == null ? 0 : inventory.getSize();
+    this.ids = new String[ n ];
+    for( int i=0; i<n; i++ ) {
+      ids[ i ] = inventory.getCard( i ).id;
+    }
+    for( Draft draft: drafts ) {
+      short[] assignment = new short[ n ];
+      for( int i=0; i<n; i++ ) {
+        assignment[ i ] = (short)draft.getAssignment( i );
+      }
+      candidates.add( assignment );
+    }
+  }
+
+  public Config getConfig() {
+    return Config.create( properties );
+  }
+
+  /**
+   * Returns a generator in the state the checkpointed one was in.
+   */
+  public Random getRandom() {
+    try {
+      ObjectInputStream in = new ObjectInputStream( new ByteArrayInputStream( state ) );
+      try {
+        return (Random)in.readObject();
+      } finally {
+        in.close();
+      }
+    } catch( IOException e ) {
+      throw new IllegalStateException( "Failed to restore the checkpointed random number generator.", e );
+    } catch( ClassNotFoundException e ) {
+      throw new IllegalStateException( "Failed to restore the checkpointed random number generator.", e );
+    }
+  }
+
+  public long getGeneration() {
+    return generation;
+  }
+
+  public int getCandidateCount() {
+    return candidates.size();
+  }
+
+  /**
+   * Rebuilds the drafts over the inventory, which must hold every card the checkpoint deals.
+   */
+  public List<Draft> getDrafts( String name, Config config, Inventory inventory, Random random ) {
+    if( config.getPackCount() != packCount ) {
+      throw new IllegalStateException( String.format(
+          "Checkpoint has %d packs but the config has %d.", packCount, config.getPackCount() ) );
+    }
+    Map<String,Integer> indexes = new HashMap<String,Integer>();
+    for( int i=0; i<inventory.getSize(); i++ ) {
+      indexes.put( inventory.getCard( i ).id, i );
+    }
+    int[] map = new int[ ids.length ];
+    for( int k=0; k<ids.length; k++ ) {
+      Integer i = indexes.get( ids[ k ] );
+      map[ k ] = i == null ? -1 : i.intValue();
+    }
+    List<Draft> drafts = new ArrayList<Draft>( candidates.size() );
+    for( short[] candidate: candidates ) {
+      int[] assignment = new int[ inventory.getSize() ];
+      Arrays.fill( assignment, Draft.POOL );
+      for( int k=0; k<ids.length; k++ ) {
+        if( candidate[ k ] != Draft.POOL ) {
+          if( map[ k ] < 0 ) {
+            throw new IllegalStateException( String.format( "Checkpoint card %s is not in the inventory.", ids[ k ] ) );
+          }
+          assignment[ map[ k ] ] = candidate[ k ];
+        }
+      }
+      Draft draft = new Draft( name, config, inventory, random, assignment );
+      draft.setFitness( new DraftFitness( draft ) );
+      drafts.add( draft );
+    }
+    return drafts;
+  }
+
+  /**
+   * Writes the checkpoint to a temporary file that then replaces the file so it is never seen half written.
+   */
+  public void write( File file ) throws IOException {
+    File temp = new File( file.getPath() + ".tmp" );
+    DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( temp ) ) );
+    try {
+      out.writeInt( MAGIC );
+      out.writeInt( VERSION );
+      out.writeInt( properties.size() );
+      for( String key: properties.stringPropertyNames() ) {
+        out.writeUTF( key );
+        out.writeUTF( properties.getProperty( key ) );
+      }
+      out.writeInt( state.length );
+      out.write( state );
+      out.writeLong( generation );
+      out.writeInt( packCount );
+      out.writeInt( ids.length );
+      for( String id: ids ) {
+        out.writeUTF( id );
+      }
+      out.writeInt( candidates.size() );
+      for( short[] candidate: candidates ) {
+        for( short p: candidate ) {
+          out.writeShort( p );
+        }
+      }
+    } finally {
+      out.close();
+    }
+    Files.move( temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+  }
+
+  private static byte[] serialize( Random random ) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream out = new ObjectOutputStream( bytes );
+      try {
+        out.writeObject( random );
+      } finally {
+        out.close();
+      }
+      return bytes.toByteArray();
+    } catch( IOException e ) {
+      throw new IllegalStateException( "Failed to save the state of the random number generator.", e );
+    }
+  }
+
+  public static Checkpoint read( File file ) throws IOException {
+    DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+    try {
+      if( in.readInt() != MAGIC ) {
+        throw new IllegalStateException( String.format( "%s is not a checkpoint.", file ) );
+      }
+      int version = in.readInt();
+      if( version != VERSION ) {
+        throw new IllegalStateException( String.format( "Checkpoint %s has unsupported version %d.", file, version ) );
+      }
+      Checkpoint checkpoint = new Checkpoint();
+      checkpoint.properties = new Properties();
+      for( int i=0, n=in.readInt(); i<n; i++ ) {
+        String key = in.readUTF();
+        checkpoint.properties.setProperty( key, in.readUTF() );
+      }
+      checkpoint.state = new byte[ in.readInt() ];
+      in.readFully( checkpoint.state );
+      checkpoint.generation = in.readLong();
+      checkpoint.packCount = in.readInt();
+      checkpoint.ids = new String[ in.readInt() ];
+      for( int i=0; i<checkpoint.ids.length; i++ ) {
+        checkpoint.ids[ i ] = in.readUTF();
+      }
+      int count = in.readInt();
+      checkpoint.candidates = new ArrayList<short[]>( count );
+      for( int c=0; c<count; c++ ) {
+        short[] candidate = new short[ checkpoint.ids.length ];
+        for( int i=0; i<candidate.length; i++ ) {
+          candidate[ i ] = in.readShort();
+        }
+        checkpoint.candidates.add( candidate );
+      }
+      return checkpoint;
+    } finally {
+      in.close();
+    }
+  }
+
+}
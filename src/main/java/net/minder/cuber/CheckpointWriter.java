@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.minder.cuber;
+
+import org.uncommons.watchmaker.framework.EvaluatedCandidate;
+import org.uncommons.watchmaker.framework.EvolutionObserver;
+import org.uncommons.watchmaker.framework.PopulationData;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Periodically checkpoints the whole population of an engine together with the state of its random number
+ * generator.  The generator is only read, never drawn from, so checkpointing does not change the run.
+ */
+public class CheckpointWriter implements EvolutionObserver<Draft> {
+
+  private File file;
+  private long period;
+  private Config config;
+  private DraftEvolutionEngine engine;
+  private Random random;
+  private long offset;
+  private int last;
+  private long written;
+
+  /**
+   * Generations are counted on from the given one, which is non zero for a resumed run, across restarts.
+   * The random number generator must be the engine's.
+   */
+  public CheckpointWriter( File file, long period, Config config, DraftEvolutionEngine engine, Random random, long generation ) {
+    this.file = file;
+    this.period = period;
+    this.config = config;
+    this.engine = engine;
+    this.random = random;
+    this.offset = generation;
+    this.last = 0;
+    this.written = System.currentTimeMillis();
+  }
+
+  public void populationUpdate( PopulationData<? extends Draft> data ) {
+    // A restart begins again at generation zero from the elite of the last run, which is not a new generation.
+    int number = data.getGenerationNumber();
+    if( number < last ) {
+      offset += last;
+    }
+    last = number;
+    long now = System.currentTimeMillis();
+    List<EvaluatedCandidate<Draft>> population = engine.getPopulation();
+    if( population != null && now - written >= period ) {
+      List<Draft> drafts = new ArrayList<Draft>( population.size() );
+      for( EvaluatedCandidate<Draft> candidate: population ) {
+        drafts.add( candidate.getCandidate() );
+      }
+      try {
+        new Checkpoint( config, random, offset + number, drafts ).write( file );
+      } catch( IOException e ) {
+        throw new IllegalStateException( String.format( "Failed to write checkpoint %s.", file ), e );
+      }
+      written = now;
+    }
+  }
+
+}
@@ -50,6 +50,36 @@ public class Config extends Properties {
   public static final String ROUNDS_DEFAULT = "3";
   public static final String PACK_NAME = "pack";
   public static final String PACK_DEFAULT = "C:10,U:3,R+M:1";
+  public static final String THREADS_NAME = "threads";
+  public static final String ISLANDS_NAME = "islands";
+  public static final String ISLANDS_DEFAULT = "1";
+  public static final String EPOCH_NAME = "epoch";
+  public static final String EPOCH_DEFAULT = "10";
+  public static final String MIGRANTS_NAME = "migrants";
+  public static final String MIGRANTS_DEFAULT = "2";
+  public static final String EVALUATIONS_NAME = "evaluations";
+  public static final String BUDGET_NAME = "budget";
+  public static final String CHECKPOINT_NAME = "checkpoint";
+  public static final String PERIOD_NAME = "period";
+  public static final String PERIOD_DEFAULT = "60s";
+  public static final String SNAPSHOT_NAME = "snapshot";
+  public static final String INTERVAL_NAME = "interval";
+  public static final String EPSILON_NAME = "epsilon";
+  public static final String ELITE_NAME = "elite";
+  public static final String ELITE_DEFAULT = "5";
+  public static final String CROSSOVER_NAME = "crossover";
+  public static final String CROSSOVER_DEFAULT = "0.5";
+  public static final String SEEDING_NAME = "seeding";
+  public static final String SEEDING_RANDOM = "random";
+  public static final String SEEDING_GREEDY = "greedy";
+  public static final String OPTIMIZER_NAME = "optimizer";
+  public static final String OPTIMIZER_EVOLVE = "evolve";
+  public static final String OPTIMIZER_ANNEAL = "anneal";
+  public static final String COOLING_NAME = "cooling";
+  public static final String COOLING_DEFAULT = DraftAnnealer.GEOMETRIC;
+  public static final String TEMPERATURE_NAME = "temperature";
+  public static final String STEPS_NAME = "steps";
+  public static final String STEPS_DEFAULT = "1000000";
 
   private static Properties DEFAULTS = new Properties();
   static {
@@ -64,6 +94,14 @@ public class Config extends Properties {
     super( defaults );
   }
 
+  public static Config create( Properties properties ) {
+    Config config = new Config( DEFAULTS );
+    for( String key: properties.stringPropertyNames() ) {
+      config.setProperty( key, properties.getProperty( key ) );
+    }
+    return config;
+  }
+
   public static Config load( File propFile ) throws IOException {
     Config config = new Config( DEFAULTS );
     config.setProperty( NAME_NAME, FilenameUtils.getBaseName( propFile.getName() ) );
@@ -74,7 +112,7 @@ public class Config extends Properties {
   }
 
   private Set<String> sets = null;
-  public Set<String> getSets() {
+  public synchronized Set<String> getSets() {
     if( sets == null ) {
       sets = new HashSet( Arrays.asList( getProperty( SETS_NAME ).split( "," ) ) );
     }
@@ -82,7 +120,7 @@ public class Config extends Properties {
   }
 
   private Set<String> types = null;
-  public Set<String> getTypes() {
+  public synchronized Set<String> getTypes() {
     if( types == null ) {
       types = new HashSet( Arrays.asList( getProperty( "types" ).split( "," ) ) );
     }
@@ -90,7 +128,7 @@ public class Config extends Properties {
   }
 
   private Query cardFilter = null;
-  public Query getCardFilter() {
+  public synchronized Query getCardFilter() {
     if( cardFilter == null ) {
       cardFilter = and( in( Card.SET, getSets() ), Utils.in( Card.TYPE, getTypes() ) );
     }
@@ -102,7 +140,7 @@ public class Config extends Properties {
   }
 
   private Integer players = null;
-  public int getPlayers() {
+  public synchronized int getPlayers() {
     if( players == null ) {
       players = Utils.parseInt( getProperty( PLAYERS_NAME, PLAYERS_DEFAULT ), Integer.parseInt( PLAYERS_DEFAULT ) );
     }
@@ -110,7 +148,7 @@ public class Config extends Properties {
   }
 
   private Integer rounds = null;
-  public int getRounds() {
+  public synchronized int getRounds() {
     if( rounds == null ) {
       rounds = Utils.parseInt( getProperty( ROUNDS_NAME, ROUNDS_DEFAULT ), Integer.parseInt( ROUNDS_DEFAULT ) );
     }
@@ -118,15 +156,149 @@ public class Config extends Properties {
   }
 
   private Integer balance = null;
-  public int getBalanceIterations() {
+  public synchronized int getBalanceIterations() {
     if( balance == null ) {
       balance = Utils.parseInt( getProperty( "balance", "100" ), Integer.parseInt( "100" ) );
     }
     return balance.intValue();
   }
 
+  private Integer threads = null;
+  public synchronized int getThreads() {
+    if( threads == null ) {
+      int cores = Runtime.getRuntime().availableProcessors();
+      threads = Utils.parseInt( getProperty( THREADS_NAME, Integer.toString( cores ) ), cores );
+    }
+    return threads.intValue();
+  }
+
+  private Integer islands = null;
+  public synchronized int getIslands() {
+    if( islands == null ) {
+      islands = Utils.parseInt( getProperty( ISLANDS_NAME, ISLANDS_DEFAULT ), Integer.parseInt( ISLANDS_DEFAULT ) );
+    }
+    return islands.intValue();
+  }
+
+  private Integer epoch = null;
+  public synchronized int getEpoch() {
+    if( epoch == null ) {
+      epoch = Utils.parseInt( getProperty( EPOCH_NAME, EPOCH_DEFAULT ), Integer.parseInt( EPOCH_DEFAULT ) );
+    }
+    return epoch.intValue();
+  }
+
+  private Integer migrants = null;
+  public synchronized int getMigrants() {
+    if( migrants == null ) {
+      migrants = Utils.parseInt( getProperty( MIGRANTS_NAME, MIGRANTS_DEFAULT ), Integer.parseInt( MIGRANTS_DEFAULT ) );
+    }
+    return migrants.intValue();
+  }
+
+  private Integer evaluations = null;
+  public synchronized int getEvaluations() {
+    if( evaluations == null ) {
+      // Zero leaves the number of evaluations unlimited.
+      evaluations = Utils.parseInt( getProperty( EVALUATIONS_NAME, "0" ), 0 );
+    }
+    return evaluations.intValue();
+  }
+
+  private Long budget = null;
+  public synchronized long getBudget() {
+    if( budget == null ) {
+      // Milliseconds of search, or zero for no limit.
+      budget = Utils.parseDuration( getProperty( BUDGET_NAME ), 0L );
+    }
+    return budget.longValue();
+  }
+
+  public File getCheckpoint() {
+    String path = getProperty( CHECKPOINT_NAME );
+    return path == null ? null : new File( path );
+  }
+
+  private Long period = null;
+  public synchronized long getPeriod() {
+    if( period == null ) {
+      // Milliseconds between checkpoints.
+      period = Utils.parseDuration( getProperty( PERIOD_NAME, PERIOD_DEFAULT ), 60L * 1000L );
+    }
+    return period.longValue();
+  }
+
+  public File getSnapshot() {
+    String path = getProperty( SNAPSHOT_NAME );
+    return path == null ? null : new File( path );
+  }
+
+  private Long interval = null;
+  public synchronized long getInterval() {
+    if( interval == null ) {
+      // Milliseconds between snapshots, or zero to write on every improvement.
+      interval = Utils.parseDuration( getProperty( INTERVAL_NAME ), 0L );
+    }
+    return interval.longValue();
+  }
+
+  private Double epsilon = null;
+  public synchronized double getEpsilon() {
+    if( epsilon == null ) {
+      // How close to the rearrangement bound the best draft must be to stop.  Off unless set because the bound only
+      // covers other deals of the cards already dealt, swapping in pool cards can still do better.
+      epsilon = Utils.parseDbl( getProperty( EPSILON_NAME, "-1" ), -1.0d );
+    }
+    return epsilon.doubleValue();
+  }
+
+  private Integer elite = null;
+  public synchronized int getElite() {
+    if( elite == null ) {
+      elite = Utils.parseInt( getProperty( ELITE_NAME, ELITE_DEFAULT ), Integer.parseInt( ELITE_DEFAULT ) );
+    }
+    return elite.intValue();
+  }
+
+  private Double crossover = null;
+  public synchronized double getCrossover() {
+    if( crossover == null ) {
+      crossover = Utils.parseDbl( getProperty( CROSSOVER_NAME, CROSSOVER_DEFAULT ), Double.parseDouble( CROSSOVER_DEFAULT ) );
+    }
+    return crossover.doubleValue();
+  }
+
+  public String getSeeding() {
+    return getProperty( SEEDING_NAME, SEEDING_GREEDY );
+  }
+
+  public String getOptimizer() {
+    return getProperty( OPTIMIZER_NAME, OPTIMIZER_EVOLVE );
+  }
+
+  public String getCooling() {
+    return getProperty( COOLING_NAME, COOLING_DEFAULT );
+  }
+
+  private Double temperature = null;
+  public synchronized double getTemperature() {
+    if( temperature == null ) {
+      // Zero leaves the annealer to pick the starting temperature from the draft.
+      temperature = Utils.parseDbl( getProperty( TEMPERATURE_NAME, "0" ), 0.0d );
+    }
+    return temperature.doubleValue();
+  }
+
+  private Integer steps = null;
+  public synchronized int getSteps() {
+    if( steps == null ) {
+      steps = Utils.parseInt( getProperty( STEPS_NAME, STEPS_DEFAULT ), Integer.parseInt( STEPS_DEFAULT ) );
+    }
+    return steps.intValue();
+  }
+
   private Integer packCount = null;
-  public int getPackCount() {
+  public synchronized int getPackCount() {
     if( packCount == null ) {
       packCount = getPlayers() * getRounds();
     }
@@ -134,7 +306,7 @@ public class Config extends Properties {
   }
 
   private Map<Set<String>,Integer> packComposition = null;
-  public Map<Set<String>,Integer> getPackComposition() {
+  public synchronized Map<Set<String>,Integer> getPackComposition() {
     if( packComposition == null ) {
       Map<Set<String>, Integer> comp = new HashMap();
       String pack = getProperty( PACK_NAME );
@@ -153,7 +325,7 @@ public class Config extends Properties {
   }
 
   private Random random = null;
-  public Random getRandom() {
+  public synchronized Random getRandom() {
     if( random == null ) {
       long seed = System.currentTimeMillis();
       String str = getProperty( "seed" );
@@ -18,58 +18,152 @@
 package net.minder.cuber;
 
 import org.uncommons.maths.random.MersenneTwisterRNG;
+import org.uncommons.maths.random.Probability;
+import org.uncommons.watchmaker.framework.EvaluatedCandidate;
 import org.uncommons.watchmaker.framework.EvolutionEngine;
 import org.uncommons.watchmaker.framework.EvolutionObserver;
+import org.uncommons.watchmaker.framework.EvolutionaryOperator;
 import org.uncommons.watchmaker.framework.GenerationalEvolutionEngine;
 import org.uncommons.watchmaker.framework.PopulationData;
 import org.uncommons.watchmaker.framework.SelectionStrategy;
+import org.uncommons.watchmaker.framework.TerminationCondition;
+import org.uncommons.watchmaker.framework.islands.IslandEvolution;
+import org.uncommons.watchmaker.framework.islands.IslandEvolutionObserver;
+import org.uncommons.watchmaker.framework.operators.EvolutionPipeline;
 import org.uncommons.watchmaker.framework.selection.RouletteWheelSelection;
 import org.uncommons.watchmaker.framework.selection.TruncationSelection;
+import org.uncommons.watchmaker.framework.termination.ElapsedTime;
 import org.uncommons.watchmaker.framework.termination.GenerationCount;
 import org.uncommons.watchmaker.framework.termination.Stagnation;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Random;
-import java.util.TreeMap;
+import java.util.Set;
 
 import static com.googlecode.cqengine.query.QueryFactory.and;
 import static com.googlecode.cqengine.query.QueryFactory.equal;
 
 public class Cuber {
 
+  public static final String RESUME_OPTION = "--resume";
+  public static final String COMPILE_OPTION = "--compile";
+
+  private static final int POPULATION_SIZE = 100;
+
   public static void main( String[] args ) throws IOException {
 
-    if( args.length < 2 ) {
+    boolean resuming = args.length > 0 && RESUME_OPTION.equals( args[ 0 ] );
+    boolean compiling = args.length > 0 && COMPILE_OPTION.equals( args[ 0 ] );
+    if( args.length < ( resuming || compiling ? 3 : 2 ) ) {
       System.err.println( "Usage: java -jar cuber.jar {config.cfg} {box.tsv} ");
+      System.err.println( "       java -jar cuber.jar " + RESUME_OPTION + " {checkpoint} {box.tsv} ");
+      System.err.println( "       java -jar cuber.jar " + COMPILE_OPTION + " {box.cbx} {box.tsv} ");
+      System.err.println( "A compiled box or a gzipped box tsv can be given wherever a box tsv is." );
       System.exit( 1 );
     }
 
-    // Load the config.
-    String configFileName = args[0];
-    Config config = Config.load( new File( configFileName ) );
+    // Compile the box files into one that loads without parsing.
+    if( compiling ) {
+      List<File> tsvFiles = new ArrayList<File>();
+      for( int i=2; i<args.length; i++ ) {
+        tsvFiles.add( new File( args[ i ] ) );
+      }
+      BoxFile.compile( tsvFiles, new File( args[ 1 ] ) );
+      System.out.println( "COMPILED " + args[ 1 ] );
+      return;
+    }
+
+    // Load the config, which when resuming is the one saved in the checkpoint.
+    Checkpoint checkpoint = null;
+    Config config;
+    int first = 1;
+    if( resuming ) {
+      checkpoint = Checkpoint.read( new File( args[ 1 ] ) );
+      config = checkpoint.getConfig();
+      first = 2;
+    } else {
+      String configFileName = args[0];
+      config = Config.load( new File( configFileName ) );
+    }
+
+    // Only the single population keeps checkpoints, so fail before loading rather than drop them later.
+    if( ( resuming || config.getCheckpoint() != null ) &&
+        ( Config.OPTIMIZER_ANNEAL.equals( config.getOptimizer() ) || config.getIslands() > 1 ) ) {
+      throw new IllegalStateException( String.format(
+          "Checkpoints are not supported with optimizer=%s and islands=%d.",
+          config.getOptimizer(), config.getIslands() ) );
+    }
 
     System.out.println( "CONFIG" );
     System.out.println( config.toString() );
 
     Box cube = new Box( config.getName() );
 
-    // Load cards from each box into the cube.
-    for( int i=1; i<args.length; i++ ) {
-      String boxFileName = args[ i ];
-      Box box = Box.load( new File( boxFileName ) );
-      //System.out.println( box.toString() );
-      cube.addCards( box.getCards( config.getCardFilter() ) );
+    // Load cards of the configured sets and types from each box into the cube, the boxes in parallel.
+    List<File> boxFiles = new ArrayList<File>();
+    for( int i=first; i<args.length; i++ ) {
+      boxFiles.add( new File( args[ i ] ) );
+    }
+    Workers loaders = new Workers( config.getThreads() );
+    try {
+      Box.load( boxFiles, cube, config.getSets(), config.getTypes(), loaders );
+    } finally {
+      loaders.shutdown();
     }
 
     System.out.println( cube.toString() );
     System.out.println( "DUP=" + cube.getDuplication() );
 
-    DraftFactory factory = new DraftFactory( cube.getName(), config, cube );
-    DraftMutator mutator = new DraftMutator();
+    // The best draft so far is kept on disk so the run can be stopped at any time.
+    SnapshotWriter snapshot = null;
+    if( config.getSnapshot() != null ) {
+      snapshot = new SnapshotWriter( config.getSnapshot(), config.getInterval() );
+    }
+
+    Random random = new MersenneTwisterRNG();
+    Draft draft;
+    if( Config.OPTIMIZER_ANNEAL.equals( config.getOptimizer() ) ) {
+      draft = anneal( config, cube, random, snapshot );
+    } else if( config.getIslands() > 1 ) {
+      draft = evolveIslands( config, cube, random, snapshot );
+    } else {
+      draft = evolve( config, cube, random, snapshot, checkpoint );
+    }
+    if( snapshot != null ) {
+      snapshot.update( draft );
+      snapshot.flush();
+    }
+
+    //for( int i=0; i<config.getBalanceIterations(); i++ ) {
+    //  draft = mutator.apply( draft, config.getRandom() );
+    //}
+
+    System.out.println( "EVOLVED" );
+    Collections.sort( draft.getPacks(), Pack.WEIGHT_COMPARATOR );
+    System.out.println( draft.toDescription() );
+
+    System.out.println( "PICKLIST" );
+    System.out.print( draft.toPickList() );
+
+  }
+
+  private static Draft evolve( Config config, Box cube, Random random, SnapshotWriter snapshot, Checkpoint resume ) {
+    long generation = 0L;
+    if( resume != null ) {
+      random = resume.getRandom();
+      generation = resume.getGeneration();
+      System.out.printf( "RESUMED generation %d with %d candidates\n", generation, resume.getCandidateCount() );
+    }
+
+    // Candidates are dealt, mutated and scored across the worker pool.
+    Workers workers = new Workers( config.getThreads() );
+    DraftFactory factory = new DraftFactory( cube.getName(), config, cube, workers );
+    DraftMutator mutator = new DraftMutator( workers );
     DraftEvaluator evaluator = new DraftEvaluator();
     SelectionStrategy selection = new TruncationSelection(0.99d);
     //SelectionStrategy selection = new RouletteWheelSelection();
@@ -79,46 +173,160 @@ public class Cuber {
     //Collections.sort( draft.getPacks(), Pack.WEIGHT_COMPARATOR );
     //System.out.println( draft.toString() );
 
-    Random random = new MersenneTwisterRNG();
-
-    EvolutionEngine<Draft> engine = new GenerationalEvolutionEngine<Draft>(
+    DraftEvolutionEngine engine = new DraftEvolutionEngine(
         factory,
-        mutator,
+        createPipeline( config, mutator, workers ),
         evaluator,
         selection,
         random );
+    // The workers keep every candidate's fitness current so the engine's own evaluation pass is only a lookup.
+    engine.setSingleThreaded( true );
 
     engine.addEvolutionObserver( new EvolutionObserver<Draft>() {
       public void populationUpdate( PopulationData<? extends Draft> data) {
-        System.out.printf("Generation %d: %s\n",
+        System.out.printf("Generation %d: rearrangement gap=%f %s\n",
             data.getGenerationNumber(),
+            OptimalityGap.getGap( data.getBestCandidate() ),
             data.getBestCandidate());
       }
     });
+    if( config.getCheckpoint() != null ) {
+      engine.addEvolutionObserver(
+          new CheckpointWriter( config.getCheckpoint(), config.getPeriod(), config, engine, random, generation ) );
+    }
+    if( snapshot != null ) {
+      engine.addEvolutionObserver( snapshot );
+    }
 
     //Draft draft = engine.evolve( 10, 0, new TargetFitness( 11, true ) );
     //Draft draft = engine.evolve( 10, 5, new GenerationCount( config.getBalanceIterations() ) );
-    Draft draft = engine.evolve( 100, 0, new Stagnation( config.getBalanceIterations(), false ) );
 
-    //for( int i=0; i<config.getBalanceIterations(); i++ ) {
-    //  draft = mutator.apply( draft, config.getRandom() );
-    //}
-
-    System.out.println( "EVOLVED" );
-    Collections.sort( draft.getPacks(), Pack.WEIGHT_COMPARATOR );
-    System.out.println( draft.toDescription() );
+    // With a budget a stagnant population is restarted around its elite until the budget is spent.
+    long evaluations = config.getEvaluations();
+    long budget = config.getBudget();
+    long start = System.currentTimeMillis();
+    OptimalityGap optimal = config.getEpsilon() >= 0 ? new OptimalityGap( config.getEpsilon() ) : null;
+    List<Draft> elite = new ArrayList<Draft>();
+    if( resume != null ) {
+      elite = resume.getDrafts( cube.getName(), config, factory.getInventory(), random );
+      elite = elite.subList( 0, Math.min( elite.size(), POPULATION_SIZE ) );
+    }
+    EvaluatedCandidate<Draft> best = null;
+    for( int run=1; ; run++ ) {
+      List<TerminationCondition> conditions = new ArrayList<TerminationCondition>();
+      conditions.add( new Stagnation( config.getBalanceIterations(), false ) );
+      if( optimal != null ) {
+        conditions.add( optimal );
+      }
+      if( evaluations > 0 ) {
+        conditions.add( new EvaluationLimit( evaluator, evaluations ) );
+      }
+      if( budget > 0 ) {
+        conditions.add( new ElapsedTime( Math.max( 1L, budget - ( System.currentTimeMillis() - start ) ) ) );
+      }
+      List<EvaluatedCandidate<Draft>> population = engine.evolvePopulation(
+          POPULATION_SIZE, 0, elite, conditions.toArray( new TerminationCondition[ conditions.size() ] ) );
+      EvaluatedCandidate<Draft> top = population.get( 0 );
+      if( best == null || top.getFitness() < best.getFitness() ) {
+        best = top;
+      }
+      System.out.printf( "Run %d: %s\n", run, top.getCandidate() );
+      if( ( evaluations <= 0 && budget <= 0 )
+          || ( optimal != null && optimal.isReached( best.getCandidate() ) )
+          || ( evaluations > 0 && evaluator.getEvaluations() >= evaluations )
+          || ( budget > 0 && System.currentTimeMillis() - start >= budget ) ) {
+        break;
+      }
+      elite = selectElite( population, config.getElite() );
+    }
+    workers.shutdown();
+    System.out.println( "OPERATORS " + mutator.getScheduler() + ", misses=" + mutator.getMisses() );
+    return best.getCandidate();
+  }
 
-    System.out.println( "PICKLIST" );
-    TreeMap<String,String> index = new TreeMap<String,String>();
-    for( Pack pack: draft.getPacks() ) {
-      for( Card card: pack.getCards() ) {
-        index.put( card.id, pack.getName() );
+  /**
+   * Picks the best distinct drafts of a population sorted fittest first.
+   */
+  private static List<Draft> selectElite( List<EvaluatedCandidate<Draft>> population, int count ) {
+    List<Draft> elite = new ArrayList<Draft>( count );
+    Set<Long> hashes = new HashSet<Long>();
+    for( int i=0; i<population.size() && elite.size()<count; i++ ) {
+      Draft draft = population.get( i ).getCandidate();
+      if( hashes.add( draft.getHash() ) ) {
+        elite.add( draft );
       }
     }
-    for( Map.Entry<String,String> entry: index.entrySet() ) {
-      System.out.println( String.format( "%s -> %s", entry.getKey(), entry.getValue() ) );
+    return elite;
+  }
+
+  private static EvolutionaryOperator<Draft> createPipeline( Config config, DraftMutator mutator, Workers workers ) {
+    // Offspring recombine whole packs of their parents before they are mutated.
+    List<EvolutionaryOperator<Draft>> operators = new ArrayList<EvolutionaryOperator<Draft>>();
+    operators.add( new DraftCrossover( new Probability( config.getCrossover() ), workers ) );
+    operators.add( mutator );
+    return new EvolutionPipeline<Draft>( operators );
+  }
+
+  private static Draft anneal( Config config, Box cube, Random random, SnapshotWriter snapshot ) {
+    DraftFactory factory = new DraftFactory( cube.getName(), config, cube );
+    DraftAnnealer annealer = new DraftAnnealer( config.getCooling(), config.getTemperature(), config.getSteps() );
+    annealer.setBudget( config.getBudget() );
+    annealer.setSnapshot( snapshot );
+    return annealer.anneal( factory.generateBalancedCandidate( random ), random );
+  }
+
+  private static Draft evolveIslands( Config config, Box cube, Random random, SnapshotWriter snapshot ) {
+    // Each island is evolved by its own thread so its pipeline is single threaded with its own random stream.
+    DraftFactory factory = new DraftFactory( cube.getName(), config, cube );
+    SelectionStrategy selection = new TruncationSelection(0.99d);
+    List<EvolutionEngine<Draft>> islands = new ArrayList<EvolutionEngine<Draft>>();
+    for( int i=0; i<config.getIslands(); i++ ) {
+      byte[] seed = new byte[ 16 ];
+      random.nextBytes( seed );
+      GenerationalEvolutionEngine<Draft> island = new GenerationalEvolutionEngine<Draft>(
+          factory,
+          createPipeline( config, new DraftMutator(), null ),
+          new DraftEvaluator(),
+          selection,
+          new MersenneTwisterRNG( seed ) );
+      island.setSingleThreaded( true );
+      islands.add( island );
+    }
+
+    DraftEvaluator evaluator = new DraftEvaluator();
+    IslandEvolution<Draft> engine = new IslandEvolution<Draft>(
+        islands,
+        new DraftMigration( evaluator.isNatural() ),
+        evaluator.isNatural(),
+        random );
+
+    engine.addEvolutionObserver( new IslandEvolutionObserver<Draft>() {
+      public void populationUpdate( PopulationData<? extends Draft> data) {
+        System.out.printf("Epoch %d: rearrangement gap=%f %s\n",
+            data.getGenerationNumber(),
+            OptimalityGap.getGap( data.getBestCandidate() ),
+            data.getBestCandidate());
+      }
+      public void islandPopulationUpdate( int islandIndex, PopulationData<? extends Draft> data ) {
+      }
+    });
+    if( snapshot != null ) {
+      engine.addEvolutionObserver( snapshot );
     }
 
+    // Termination is checked across all islands once per epoch so the balance iterations are converted to epochs.
+    int epoch = Math.max( 1, config.getEpoch() );
+    int stagnation = Math.max( 1, ( config.getBalanceIterations() + epoch - 1 ) / epoch );
+    List<TerminationCondition> conditions = new ArrayList<TerminationCondition>();
+    conditions.add( new Stagnation( stagnation, false ) );
+    if( config.getBudget() > 0 ) {
+      conditions.add( new ElapsedTime( config.getBudget() ) );
+    }
+    if( config.getEpsilon() >= 0 ) {
+      conditions.add( new OptimalityGap( config.getEpsilon() ) );
+    }
+    return engine.evolve( 100, 0, epoch, config.getMigrants(),
+        conditions.toArray( new TerminationCondition[ conditions.size() ] ) );
   }
 
   private static Card selectReplacement( List<Card> replacements, Card original, boolean stronger ) {
@@ -143,11 +351,11 @@ public class Cuber {
     List<Card> replacements;
     Card replacement;
 
-    replacements = stack.getCardList( and( equal( Card.RARITY, original.rarity ), equal( Card.TYPE, original.type ) ) );
+    replacements = stack.getCardList( and( equal( Card.RARITY, original.definition.rarity ), equal( Card.TYPE, original.definition.type ) ) );
     replacement = selectReplacement( replacements, original, stronger );
 
     if( replacement == null ) {
-      replacements = stack.getCardList( equal( Card.RARITY, original.rarity ) );
+      replacements = stack.getCardList( equal( Card.RARITY, original.definition.rarity ) );
       replacement = selectReplacement( replacements, original, stronger );
     }
 
@@ -25,14 +25,14 @@ import org.apache.commons.math3.stat.descriptive.StatisticalSummaryValues;
 import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
-
-import static com.googlecode.cqengine.query.QueryFactory.in;
+import java.util.TreeMap;
 
 public class Draft {
 
@@ -48,45 +48,344 @@ public class Draft {
       PACK_DUP, DRAFT_DUP
       };
 
+  // Where each inventory card is: the index of its pack or POOL.
+  public static final int POOL = -1;
+
+  // How far the randomized greedy deal perturbs the size of each card.
+  private static final double GREEDY_NOISE = 0.1d;
+
   private String name;
   private Config config;
-  private Stack box;
+  private Inventory inventory;
   private Random rng;
-  private Map<String,Pack> packs;
+  private SharedIntArray assignment;
+  private Pool pool;
+  private List<Pack> packs;
   private DraftFitness fitness;
+  // Sum of the mixed pack hashes so it does not depend on which pack is which.
+  private long hash;
+
+  // Copies share their packs until they change them.  A pack not owned is copied first.
+  // The pool and assignment share their own storage in chunks.
+  private boolean[] ownedPacks;
+
+  public Draft( String name, Config config, Inventory inventory, Random rng ) {
+    this( name, config, inventory, rng, true );
+  }
+
+  /**
+   * Deals a new draft.  A draft that is not randomized is dealt the same way every time when seeding greedily.
+   */
+  public Draft( String name, Config config, Inventory inventory, Random rng, boolean randomized ) {
+    this.name = name;
+    this.config = config;
+    this.inventory = inventory;
+    this.rng = rng;
+    this.assignment = new SharedIntArray( inventory.getSize(), POOL );
+    this.pool = new Pool( inventory );
+    this.packs = new ArrayList<Pack>();
+    this.fitness = null;
+    if( Config.SEEDING_GREEDY.equals( config.getSeeding() ) ) {
+      initGreedy( randomized );
+    } else {
+      init();
+    }
+    finishInit();
+  }
 
-  public Draft( String name, Config config, Stack box, Random rng ) {
+  /**
+   * Rebuilds a draft from where each inventory card is dealt: the index of its pack or POOL.
+   */
+  public Draft( String name, Config config, Inventory inventory, Random rng, int[] assignment ) {
+    if( assignment.length != inventory.getSize() ) {
+      throw new IllegalStateException( String.format(
+          "Assignment of %d cards does not match inventory of %d.", assignment.length, inventory.getSize() ) );
+    }
     this.name = name;
     this.config = config;
-    this.box = box;
+    this.inventory = inventory;
     this.rng = rng;
-    this.packs = new HashMap<String,Pack>();
+    this.assignment = new SharedIntArray( assignment.length, POOL );
+    this.pool = new Pool( inventory );
+    this.packs = new ArrayList<Pack>();
     this.fitness = null;
-    init();
+    int n = config.getPackCount();
+    for( int i=1; i<=n; i++ ) {
+      packs.add( new Pack( String.format( "%02d", i ), i - 1 ) );
+    }
+    for( int i=0; i<assignment.length; i++ ) {
+      int p = assignment[ i ];
+      if( p != POOL ) {
+        if( p < 0 || p >= n ) {
+          throw new IllegalStateException( String.format( "Card %s dealt to pack %d of %d.", inventory.getCard( i ).id, p, n ) );
+        }
+        this.assignment.set( i, p );
+        pool.remove( i );
+        packs.get( p ).addCard( inventory.getCard( i ) );
+      }
+    }
+    finishInit();
+  }
+
+  private void finishInit() {
+    this.ownedPacks = new boolean[ packs.size() ];
+    Arrays.fill( this.ownedPacks, true );
+    for( Pack pack: packs ) {
+      this.hash += Utils.mix( pack.getHash() );
+    }
+  }
+
+  private Draft( Draft draft ) {
+    this.name = draft.name;
+    this.config = draft.config;
+    this.inventory = draft.inventory;
+    this.rng = draft.rng;
+    this.assignment = draft.assignment.copy();
+    this.pool = draft.pool.copy();
+    this.packs = new ArrayList<Pack>( draft.packs );
+    this.ownedPacks = new boolean[ packs.size() ];
+    this.fitness = draft.fitness == null ? null : draft.fitness.copy( this );
+    this.hash = draft.hash;
+    // The original now shares its packs too so it must also copy them before it changes them.
+    Arrays.fill( draft.ownedPacks, false );
+  }
+
+  /**
+   * Creates a copy of this draft that can be mutated without affecting the original.
+   * The packs, pool and assignment are shared copy-on-write so only the parts that are later changed get copied.
+   * The two drafts must not be used by different threads until one of them has been changed.
+   */
+  public Draft copy() {
+    return new Draft( this );
+  }
+
+  /**
+   * Overwrites this draft with another draft of the same inventory, reusing whatever storage this draft owns.
+   * Unlike copy, the other draft keeps ownership of its packs, pool and assignment so it can go on changing cheaply.
+   */
+  public void copyFrom( Draft draft ) {
+    if( draft.inventory != inventory || draft.packs.size() != packs.size() ) {
+      throw new IllegalStateException( String.format( "Draft %s is not a draft of %s.", draft.getName(), getName() ) );
+    }
+    for( int p=0; p<packs.size(); p++ ) {
+      if( ownedPacks[ p ] ) {
+        packs.get( p ).copyFrom( draft.packs.get( p ) );
+      } else {
+        packs.set( p, draft.packs.get( p ).copy() );
+        ownedPacks[ p ] = true;
+      }
+    }
+    assignment.copyFrom( draft.assignment );
+    pool.copyFrom( draft.pool );
+    fitness = draft.fitness == null ? null : draft.fitness.copy( this );
+    hash = draft.hash;
+  }
+
+  private Pack ownPack( int p ) {
+    Pack pack = packs.get( p );
+    if( !ownedPacks[ p ] ) {
+      pack = pack.copy();
+      packs.set( p, pack );
+      ownedPacks[ p ] = true;
+    }
+    return pack;
+  }
+
+  private int indexOf( Pack pack ) {
+    // The caller may hold a pack this draft has since replaced with its own copy, which keeps the same index.
+    int p = pack.getIndex();
+    if( p < 0 || p >= packs.size() ) {
+      throw new IllegalStateException( String.format( "Draft %s has no pack %s.", getName(), pack.getName() ) );
+    }
+    return p;
   }
 
   private void init() {
     Map<Set<String>,Integer> comp = config.getPackComposition();
+    int n = config.getPackCount();
+    for( int i=1; i<=n; i++ ) {
+      packs.add( new Pack( String.format( "%02d", i ), i - 1 ) );
+    }
+    for( Map.Entry<Set<String>,Integer> pair: comp.entrySet() ) {
+      Set<String> rarity = pair.getKey();
+      int count = pair.getValue();
+      // Select the pool cards by rarity.
+      List<Integer> cards = new ArrayList<Integer>();
+      for( int i=0, s=inventory.getSize(); i<s; i++ ) {
+        if( assignment.get( i ) == POOL && rarity.contains( inventory.getCard( i ).definition.rarity ) ) {
+          cards.add( i );
+        }
+      }
+      if( cards.size() < count * n ) {
+        throw new IllegalStateException( String.format( "Ran out of %s cards.", StringUtils.join( rarity ) ) );
+      }
+      // Shuffle them and deal each pack its share.
+      Collections.shuffle( cards, rng );
+      for( int p=0, j=0; p<n; p++ ) {
+        Pack pack = packs.get( p );
+        for( int k=0; k<count; k++ ) {
+          int i = cards.get( j++ );
+          assignment.set( i, p );
+          pool.remove( i );
+          pack.addCard( inventory.getCard( i ) );
+        }
+      }
+    }
+  }
+
+  /**
+   * Sorts the cards nearest the average of the group first.  Distance is the sum of the squared differences of each
+   * metric, scaled by its fitness weight over the group average.  Ties are broken by card id.
+   */
+  private void sortByTypicality( List<Integer> group ) {
+    int[] columns = new int[ METRIC_NAMES.length ];
+    double[] averages = new double[ METRIC_NAMES.length ];
+    double[] scales = new double[ METRIC_NAMES.length ];
+    for( int m=0; m<METRIC_NAMES.length; m++ ) {
+      columns[ m ] = DraftFitness.getMetricColumn( m );
+      if( columns[ m ] >= 0 && !group.isEmpty() ) {
+        for( int i: group ) {
+          averages[ m ] += inventory.getCard( i ).getValue( columns[ m ] );
+        }
+        averages[ m ] /= group.size();
+        scales[ m ] = averages[ m ] == 0.0d ? 0.0d : DraftFitness.getMetricWeight( m ) / averages[ m ];
+      }
+    }
+    final double[] distances = new double[ inventory.getSize() ];
+    for( int i: group ) {
+      Card card = inventory.getCard( i );
+      for( int m=0; m<columns.length; m++ ) {
+        if( columns[ m ] >= 0 ) {
+          double d = scales[ m ] * ( card.getValue( columns[ m ] ) - averages[ m ] );
+          distances[ i ] += d * d;
+        }
+      }
+    }
+    Collections.sort( group, new Comparator<Integer>() {
+      public int compare( Integer left, Integer right ) {
+        int result = Double.compare( distances[ left ], distances[ right ] );
+        if( result == 0 ) {
+          result = inventory.getCard( left ).id.compareTo( inventory.getCard( right ).id );
+        }
+        return result;
+      }
+    } );
+  }
+
+  /**
+   * Deals the same pack composition as init but balanced up front.
+   * Cards are dealt largest first, in the spirit of Karmarkar-Karp differencing, each to the pack with room for its
+   * rarity whose metric sums it adds least to.  Metrics are scaled by their fitness weight over their pack average.
+   * When randomized, the cards are drawn randomly from surplus rarities and their sizes perturbed so each draft differs.
+   * Otherwise each rarity group deals its most typical cards, those whose metrics are nearest the group average,
+   * so the seed does not depend on the order of the box rows and no pack starts with an outlier.
+   */
+  private void initGreedy( boolean randomized ) {
+    Map<Set<String>,Integer> comp = config.getPackComposition();
+    int n = config.getPackCount();
+    for( int i=1; i<=n; i++ ) {
+      packs.add( new Pack( String.format( "%02d", i ), i - 1 ) );
+    }
+    // Select the cards of each rarity group that will be dealt.
+    List<Integer> cards = new ArrayList<Integer>();
+    List<Integer> groups = new ArrayList<Integer>();
+    int[] counts = new int[ comp.size() ];
+    boolean[] selected = new boolean[ inventory.getSize() ];
+    int g = 0;
+    for( Map.Entry<Set<String>,Integer> pair: comp.entrySet() ) {
+      Set<String> rarity = pair.getKey();
+      counts[ g ] = pair.getValue();
+      List<Integer> group = new ArrayList<Integer>();
+      for( int i=0, s=inventory.getSize(); i<s; i++ ) {
+        if( !selected[ i ] && rarity.contains( inventory.getCard( i ).definition.rarity ) ) {
+          group.add( i );
+        }
+      }
+      if( group.size() < counts[ g ] * n ) {
+        throw new IllegalStateException( String.format( "Ran out of %s cards.", StringUtils.join( rarity ) ) );
+      }
+      if( randomized ) {
+        Collections.shuffle( group, rng );
+      } else {
+        sortByTypicality( group );
+      }
+      for( int i: group.subList( 0, counts[ g ] * n ) ) {
+        selected[ i ] = true;
+        cards.add( i );
+        groups.add( g );
+      }
+      g++;
+    }
+
+    // Scale each metric by its weight over the average pack sum it will have.
+    int[] columns = new int[ METRIC_NAMES.length ];
+    double[] scales = new double[ METRIC_NAMES.length ];
+    for( int m=0; m<METRIC_NAMES.length; m++ ) {
+      columns[ m ] = DraftFitness.getMetricColumn( m );
+      if( columns[ m ] >= 0 ) {
+        double total = 0.0d;
+        for( int i: cards ) {
+          total += inventory.getCard( i ).getValue( columns[ m ] );
+        }
+        scales[ m ] = total == 0.0d ? 0.0d : DraftFitness.getMetricWeight( m ) * n / total;
+      }
+    }
+    int c = cards.size();
+    final double[] sizes = new double[ c ];
+    Integer[] order = new Integer[ c ];
+    for( int k=0; k<c; k++ ) {
+      Card card = inventory.getCard( cards.get( k ) );
+      for( int m=0; m<columns.length; m++ ) {
+        if( columns[ m ] >= 0 ) {
+          sizes[ k ] += scales[ m ] * card.getValue( columns[ m ] );
+        }
+      }
+      if( randomized ) {
+        sizes[ k ] *= 1.0d + GREEDY_NOISE * ( 2.0d * rng.nextDouble() - 1.0d );
+      }
+      order[ k ] = k;
+    }
+    Arrays.sort( order, new Comparator<Integer>() {
+      public int compare( Integer left, Integer right ) {
+        return Double.compare( sizes[ right ], sizes[ left ] );
+      }
+    } );
 
-    for( int i=1, n=config.getPackCount(); i<=n; i++ ) {
-      Pack pack = new Pack( String.format( "%02d", i ) );
-      for( Map.Entry<Set<String>,Integer> pair: comp.entrySet() ) {
-        Set<String> rarity = pair.getKey();
-        int count = pair.getValue();
-        // Select a stack of cards by rarity.
-        List<Card> cards = box.getCardList( in( Card.RARITY, rarity ) );
-        if( cards.size() < count ) {
-          throw new IllegalStateException( String.format( "Ran out of %s cards.", StringUtils.join( rarity ) ) );
+    // Deal largest first to the pack with room that the card grows the least.
+    double[][] loads = new double[ n ][ columns.length ];
+    int[][] room = new int[ counts.length ][ n ];
+    for( int k=0; k<counts.length; k++ ) {
+      Arrays.fill( room[ k ], counts[ k ] );
+    }
+    for( int k: order ) {
+      int i = cards.get( k );
+      int group = groups.get( k );
+      Card card = inventory.getCard( i );
+      int best = -1;
+      double bestCost = Double.MAX_VALUE;
+      for( int p=0; p<n; p++ ) {
+        if( room[ group ][ p ] > 0 ) {
+          double cost = 0.0d;
+          for( int m=0; m<columns.length; m++ ) {
+            if( columns[ m ] >= 0 ) {
+              cost += scales[ m ] * card.getValue( columns[ m ] ) * loads[ p ][ m ];
+            }
+          }
+          if( cost < bestCost ) {
+            best = p;
+            bestCost = cost;
+          }
         }
-        Collections.shuffle( cards, config.getRandom() );
-        // Shuffle the stack.
-        for( int j=0; j<count; j++ ) {
-          Card card = cards.get( j );
-          box.delCard( card );
-          pack.addCard( card );
+      }
+      for( int m=0; m<columns.length; m++ ) {
+        if( columns[ m ] >= 0 ) {
+          loads[ best ][ m ] += card.getValue( columns[ m ] );
         }
       }
-      packs.put( pack.getName(), pack );
+      room[ group ][ best ]--;
+      assignment.set( i, best );
+      pool.remove( i );
+      packs.get( best ).addCard( card );
     }
   }
 
@@ -98,10 +397,50 @@ public class Draft {
     return config;
   }
 
+  public Inventory getInventory() {
+    return inventory;
+  }
+
+  /**
+   * Builds a stack of the cards left in the pool.  This is a copy intended for output and is not kept in sync.
+   */
   public Stack getBox() {
+    Stack box = new Stack( inventory.getName() );
+    for( int i=0, n=assignment.length(); i<n; i++ ) {
+      if( assignment.get( i ) == POOL ) {
+        box.addCard( inventory.getCard( i ) );
+      }
+    }
     return box;
   }
 
+  public Pool getPool() {
+    return pool;
+  }
+
+  /**
+   * Returns the index of the pack the inventory card is dealt to or POOL.
+   */
+  public int getAssignment( int index ) {
+    return assignment.get( index );
+  }
+
+  public Card getRandomPoolCard( Random random ) {
+    Card card = pool.draw( random );
+    if( card == null ) {
+      throw new IllegalStateException( String.format( "Draft %s pool is empty.", getName() ) );
+    }
+    return card;
+  }
+
+  /**
+   * A Zobrist style hash of which cards are dealt together.  Drafts that differ only by the names of their packs
+   * or by which copy of a card was dealt have the same hash.  It is maintained as cards are swapped.
+   */
+  public long getHash() {
+    return hash;
+  }
+
   public DraftFitness getFitness() {
     return fitness;
   }
@@ -120,7 +459,7 @@ public class Draft {
     StringBuilder s = new StringBuilder();
     s.append( String.format( "Draft[%s]@%f", name, fitness.getAggregate() ) );
     s.append( System.lineSeparator() );
-    for( Pack pack: packs.values() ) {
+    for( Pack pack: packs ) {
       s.append( "\t" );
       s.append( pack.toString() );
       s.append( System.lineSeparator() );
@@ -133,12 +472,96 @@ public class Draft {
     return s.toString();
   }
 
+  /**
+   * Lists which pack each card is dealt to, ordered by card id.
+   */
+  public String toPickList() {
+    TreeMap<String,String> index = new TreeMap<String,String>();
+    for( Pack pack: packs ) {
+      for( Card card: pack.getCards() ) {
+        index.put( card.id, pack.getName() );
+      }
+    }
+    StringBuilder s = new StringBuilder();
+    for( Map.Entry<String,String> entry: index.entrySet() ) {
+      s.append( String.format( "%s -> %s", entry.getKey(), entry.getValue() ) );
+      s.append( System.lineSeparator() );
+    }
+    return s.toString();
+  }
+
+  /**
+   * Moves packCard from pack into the pool and poolCard from the pool into the pack.
+   * The fitness, when present, is updated for the swap rather than recomputed.
+   */
+  public void swapCards( Pack pack, Card packCard, Card poolCard ) {
+    if( packCard.equals( poolCard ) ) {
+      return;
+    }
+    int p = indexOf( pack );
+    int i = inventory.indexOf( packCard );
+    int j = inventory.indexOf( poolCard );
+    pack = ownPack( p );
+    assignment.set( i, POOL );
+    assignment.set( j, p );
+    pool.add( i );
+    pool.remove( j );
+    hash -= Utils.mix( pack.getHash() );
+    pack.delCard( packCard );
+    pack.addCard( poolCard );
+    hash += Utils.mix( pack.getHash() );
+    if( fitness != null ) {
+      fitness.update( pack, packCard, poolCard );
+    }
+  }
+
+  /**
+   * Exchanges card a of pack p with card b of pack q.  The pool is not involved.
+   */
+  public void swapPackCards( Pack p, Card a, Pack q, Card b ) {
+    if( p.getIndex() == q.getIndex() || a.equals( b ) ) {
+      return;
+    }
+    int pi = indexOf( p );
+    int qi = indexOf( q );
+    p = ownPack( pi );
+    q = ownPack( qi );
+    assignment.set( inventory.indexOf( a ), qi );
+    assignment.set( inventory.indexOf( b ), pi );
+    hash -= Utils.mix( p.getHash() ) + Utils.mix( q.getHash() );
+    p.delCard( a );
+    p.addCard( b );
+    q.delCard( b );
+    q.addCard( a );
+    hash += Utils.mix( p.getHash() ) + Utils.mix( q.getHash() );
+    if( fitness != null ) {
+      fitness.update( p, a, b );
+      fitness.update( q, b, a );
+    }
+  }
+
   public Pack getPack( String name ) {
-    return packs.get( name );
+    for( Pack pack: packs ) {
+      if( pack.getName().equals( name ) ) {
+        return pack;
+      }
+    }
+    return null;
+  }
+
+  public int getPackCount() {
+    return packs.size();
+  }
+
+  public Pack getPack( int index ) {
+    return packs.get( index );
   }
 
+  /**
+   * The packs may be shared with copies of this draft so they must only be changed through the draft.
+   */
   public List<Pack> getPacks() {
-    return new ArrayList( packs.values() );
+    return new ArrayList( packs );
   }
 
   public double getDraftDuplication() {
@@ -148,7 +571,7 @@ public class Draft {
   public double getPackDuplication() {
     double d = 0.0d;
     double t = 0.0d;
-    for( Pack pack: packs.values() ) {
+    for( Pack pack: packs ) {
       d += pack.getDuplication();
       t += pack.getCount();
     }
@@ -157,9 +580,9 @@ public class Draft {
 
   public Metric getMetricTotal( String name ) {
     Metric draftMetric = new Metric( name );
-    for( Pack pack: packs.values() ) {
-      final Metric packMetric = pack.getMetrics().get( name );
-      draftMetric.add( pack.getName(), packMetric.getSum() );
+    int column = Catalog.getColumn( name );
+    for( Pack pack: packs ) {
+      draftMetric.add( pack.getName(), pack.getSum( column ) );
     }
     return draftMetric;
   }
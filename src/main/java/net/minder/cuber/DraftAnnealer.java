@@ -0,0 +1,193 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.minder.cuber;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Simulated annealing of a single draft.
+ * Each step swaps a random pack card with a pool card of the same rarity, which keeps the pack composition,
+ * and the swap is reverted in place when it is rejected.
+ */
+public class DraftAnnealer {
+
+  public static final String GEOMETRIC = "geometric";
+  public static final String LINEAR = "linear";
+
+  // The geometric schedule cools to this fraction of the starting temperature.
+  private static final double FINAL_RATIO = 1.0e-3d;
+  private static final int CALIBRATION_STEPS = 1000;
+  private static final int REPORTS = 100;
+  // The clock and the snapshot are checked once every CHECK_MASK + 1 steps.
+  private static final int CHECK_MASK = 0xffff;
+
+  private String cooling;
+  private double temperature;
+  private int steps;
+  private Map<String,int[]> rarityBuckets;
+  private long budget;
+  private SnapshotWriter snapshot;
+
+  public DraftAnnealer( String cooling, double temperature, int steps ) {
+    if( !GEOMETRIC.equals( cooling ) && !LINEAR.equals( cooling ) ) {
+      throw new IllegalStateException( String.format( "Unknown cooling schedule %s.", cooling ) );
+    }
+    this.cooling = cooling;
+    this.temperature = temperature;
+    this.steps = steps;
+    this.rarityBuckets = new HashMap<String,int[]>();
+  }
+
+  /**
+   * Stops annealing after this many milliseconds, or never if zero.
+   */
+  public void setBudget( long budget ) {
+    this.budget = budget;
+  }
+
+  /**
+   * Offers the best draft to the snapshot as annealing goes on.
+   */
+  public void setSnapshot( SnapshotWriter snapshot ) {
+    this.snapshot = snapshot;
+  }
+
+  /**
+   * Anneals the draft in place and returns the best draft seen, which is either the draft itself or a copy of it.
+   * The best draft is kept in a single buffer that is overwritten so the draft being annealed keeps its storage.
+   */
+  public Draft anneal( Draft draft, Random random ) {
+    DraftFitness fitness = draft.getFitness();
+    if( fitness == null ) {
+      fitness = new DraftFitness( draft );
+      draft.setFitness( fitness );
+    }
+    Card[] swap = new Card[ 2 ];
+
+    double start = temperature > 0 ? temperature : calibrate( draft, swap, random );
+    double t = start;
+    double alpha = Math.pow( FINAL_RATIO, 1.0d / Math.max( 1, steps ) );
+    double step = t / Math.max( 1, steps );
+
+    double current = fitness.getAggregate();
+    double bestFitness = current;
+    Draft best = null;
+    // Set while the draft itself is better than the saved best so it is only copied before it gets worse.
+    boolean unsaved = true;
+
+    int report = Math.max( 1, steps / REPORTS );
+    long began = System.currentTimeMillis();
+    for( int k=0; k<steps; k++ ) {
+      if( ( k & CHECK_MASK ) == 0 && k > 0 ) {
+        long elapsed = System.currentTimeMillis() - began;
+        if( budget > 0 ) {
+          if( elapsed >= budget ) {
+            break;
+          }
+          // Cool by whichever is further along, the steps or the time, so the schedule completes in the budget.
+          double progress = (double)elapsed / budget;
+          if( progress > (double)k / steps ) {
+            t = GEOMETRIC.equals( cooling ) ? start * Math.pow( FINAL_RATIO, progress ) : start * ( 1.0d - progress );
+          }
+        }
+        if( snapshot != null ) {
+          snapshot.update( unsaved ? draft : best );
+        }
+      }
+      Pack pack = draft.getPack( random.nextInt( draft.getPackCount() ) );
+      if( propose( draft, pack, swap, random ) ) {
+        double next = fitness.getAggregate();
+        double delta = next - current;
+        if( delta <= 0 || random.nextDouble() < Math.exp( -delta / t ) ) {
+          if( delta > 0 && unsaved ) {
+            draft.swapCards( pack, swap[ 1 ], swap[ 0 ] );
+            if( best == null ) {
+              best = draft.copy();
+            } else {
+              best.copyFrom( draft );
+            }
+            unsaved = false;
+            draft.swapCards( pack, swap[ 0 ], swap[ 1 ] );
+          }
+          current = next;
+          if( current < bestFitness ) {
+            bestFitness = current;
+            unsaved = true;
+          }
+        } else {
+          draft.swapCards( pack, swap[ 1 ], swap[ 0 ] );
+        }
+      }
+      t = GEOMETRIC.equals( cooling ) ? t * alpha : Math.max( t - step, Double.MIN_VALUE );
+      if( ( k + 1 ) % report == 0 ) {
+        System.out.printf( "Step %d: T=%f %f %f\n", k + 1, t, current, bestFitness );
+      }
+    }
+    return unsaved ? draft : best;
+  }
+
+  /**
+   * Picks a starting temperature at which an average uphill swap is accepted half of the time.
+   */
+  private double calibrate( Draft draft, Card[] swap, Random random ) {
+    DraftFitness fitness = draft.getFitness();
+    double sum = 0.0d;
+    int count = 0;
+    for( int k=0; k<CALIBRATION_STEPS; k++ ) {
+      Pack pack = draft.getPack( random.nextInt( draft.getPackCount() ) );
+      double before = fitness.getAggregate();
+      if( propose( draft, pack, swap, random ) ) {
+        double delta = fitness.getAggregate() - before;
+        draft.swapCards( pack, swap[ 1 ], swap[ 0 ] );
+        if( delta > 0 ) {
+          sum += delta;
+          count++;
+        }
+      }
+    }
+    return count == 0 ? 1.0d : sum / count / Math.log( 2.0d );
+  }
+
+  /**
+   * Swaps a random card of the pack with a pool card of the same rarity.
+   * The pack card and the pool card are left in swap so the caller can revert it.
+   */
+  private boolean propose( Draft draft, Pack pack, Card[] swap, Random random ) {
+    Card packCard = pack.getRandomCard( random );
+    Card poolCard = draft.getPool().draw( getRarityBuckets( draft.getInventory(), packCard.definition.rarity ), random );
+    if( poolCard == null ) {
+      return false;
+    }
+    swap[ 0 ] = packCard;
+    swap[ 1 ] = poolCard;
+    draft.swapCards( pack, packCard, poolCard );
+    return true;
+  }
+
+  private int[] getRarityBuckets( Inventory inventory, String rarity ) {
+    int[] buckets = rarityBuckets.get( rarity );
+    if( buckets == null ) {
+      buckets = inventory.getRarityBuckets( rarity );
+      rarityBuckets.put( rarity, buckets );
+    }
+    return buckets;
+  }
+
+}
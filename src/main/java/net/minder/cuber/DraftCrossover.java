@@ -0,0 +1,218 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.minder.cuber;
+
+import org.uncommons.maths.random.Probability;
+import org.uncommons.watchmaker.framework.operators.AbstractCrossover;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Crossover that inherits whole packs.
+ * Each offspring takes the most balanced packs of one parent and fills the rest with the most balanced packs of the
+ * other.  Cards the second parent's packs share with the first are repaired with free cards of the same rarity, or
+ * failing that of the same rarity group, so every card is dealt once and the pack composition still holds.
+ */
+public class DraftCrossover extends AbstractCrossover<Draft> {
+
+  private Probability probability;
+  private Workers workers;
+
+  public DraftCrossover() {
+    this( Probability.ONE );
+  }
+
+  public DraftCrossover( Probability probability ) {
+    this( probability, null );
+  }
+
+  public DraftCrossover( Probability probability, Workers workers ) {
+    super( 1, probability );
+    this.probability = probability;
+    this.workers = workers;
+  }
+
+  public List<Draft> apply( List<Draft> input, Random random ) {
+    if( workers == null || !workers.isParallel() ) {
+      return super.apply( input, random );
+    }
+    return applyParallel( input, random );
+  }
+
+  private List<Draft> applyParallel( List<Draft> input, Random random ) {
+    // Parents are paired and chosen for crossover as AbstractCrossover does, in order on the caller's generator.
+    // Only the offspring are built by the workers.
+    List<Draft> shuffled = new ArrayList<Draft>( input );
+    Collections.shuffle( shuffled, random );
+    final Draft[] output = shuffled.toArray( new Draft[ shuffled.size() ] );
+    final List<Integer> pairs = new ArrayList<Integer>();
+    for( int i=0; i+1<output.length; i+=2 ) {
+      if( probability.nextEvent( random ) ) {
+        pairs.add( i );
+      }
+    }
+    // Ranking can set a parent's fitness and selection can return the same parent more than once,
+    // so every parent is ranked here before any worker reads it.
+    final Map<Draft,Integer[]> orders = new IdentityHashMap<Draft,Integer[]>();
+    for( int i: pairs ) {
+      for( Draft parent: Arrays.asList( output[ i ], output[ i + 1 ] ) ) {
+        if( !orders.containsKey( parent ) ) {
+          orders.put( parent, rankPacks( parent ) );
+        }
+      }
+    }
+    Random[] streams = workers.split( random );
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    for( int t=0; t<streams.length; t++ ) {
+      final Random stream = streams[ t ];
+      final int from = pairs.size() * t / streams.length;
+      final int to = pairs.size() * ( t + 1 ) / streams.length;
+      tasks.add( new Callable<Void>() {
+        public Void call() {
+          for( int k=from; k<to; k++ ) {
+            int i = pairs.get( k );
+            Draft parent1 = output[ i ];
+            Draft parent2 = output[ i + 1 ];
+            List<Draft> offspring = mate( parent1, orders.get( parent1 ), parent2, orders.get( parent2 ), stream );
+            output[ i ] = offspring.get( 0 );
+            output[ i + 1 ] = offspring.get( 1 );
+          }
+          return null;
+        }
+      } );
+    }
+    workers.invoke( tasks );
+    return new ArrayList<Draft>( Arrays.asList( output ) );
+  }
+
+  protected List<Draft> mate( Draft parent1, Draft parent2, int numberOfCrossoverPoints, Random random ) {
+    return mate( parent1, rankPacks( parent1 ), parent2, rankPacks( parent2 ), random );
+  }
+
+  private static List<Draft> mate( Draft parent1, Integer[] order1, Draft parent2, Integer[] order2, Random random ) {
+    int n = order1.length;
+    int c = n < 2 ? n : 1 + random.nextInt( n - 1 );
+    List<Draft> offspring = new ArrayList<Draft>( 2 );
+    offspring.add( mate( parent1, order1, c, parent2, order2, random ) );
+    offspring.add( mate( parent2, order2, c, parent1, order1, random ) );
+    return offspring;
+  }
+
+  private static Draft mate( Draft first, Integer[] firstOrder, int c, Draft second, Integer[] secondOrder, Random random ) {
+    Inventory inventory = first.getInventory();
+    int[] assignment = new int[ inventory.getSize() ];
+    Arrays.fill( assignment, Draft.POOL );
+
+    // The first parent's best packs are inherited whole.
+    for( int k=0; k<c; k++ ) {
+      for( Card card: first.getPack( firstOrder[ k ] ).getCards() ) {
+        assignment[ inventory.indexOf( card ) ] = k;
+      }
+    }
+    // The second parent's best packs are inherited except for cards that are already dealt.
+    List<Integer> conflicts = new ArrayList<Integer>();
+    List<Integer> conflictPacks = new ArrayList<Integer>();
+    for( int k=c; k<firstOrder.length; k++ ) {
+      for( Card card: second.getPack( secondOrder[ k - c ] ).getCards() ) {
+        int i = inventory.indexOf( card );
+        if( assignment[ i ] == Draft.POOL ) {
+          assignment[ i ] = k;
+        } else {
+          conflicts.add( i );
+          conflictPacks.add( k );
+        }
+      }
+    }
+    // Repair each conflict from the cards left free.
+    if( !conflicts.isEmpty() ) {
+      Pool pool = new Pool( inventory );
+      for( int i=0; i<assignment.length; i++ ) {
+        if( assignment[ i ] != Draft.POOL ) {
+          pool.remove( i );
+        }
+      }
+      for( int j=0; j<conflicts.size(); j++ ) {
+        Card original = inventory.getCard( conflicts.get( j ) );
+        Card replacement = pool.draw( inventory.getBucket( conflicts.get( j ) ), random );
+        if( replacement == null ) {
+          replacement = pool.draw( inventory.getRarityBuckets( original.definition.rarity ), random );
+        }
+        if( replacement == null ) {
+          for( String rarity: getRarityGroup( first.getConfig(), original.definition.rarity ) ) {
+            replacement = pool.draw( inventory.getRarityBuckets( rarity ), random );
+            if( replacement != null ) {
+              break;
+            }
+          }
+        }
+        if( replacement == null ) {
+          throw new IllegalStateException( String.format( "No replacement for %s.", original ) );
+        }
+        int r = inventory.indexOf( replacement );
+        assignment[ r ] = conflictPacks.get( j );
+        pool.remove( r );
+      }
+    }
+
+    Draft child = new Draft( first.getName(), first.getConfig(), inventory, random, assignment );
+    child.setFitness( new DraftFitness( child ) );
+    return child;
+  }
+
+  /**
+   * Orders the pack indexes of the draft from the most to the least balanced.
+   */
+  private static Integer[] rankPacks( Draft draft ) {
+    if( draft.getFitness() == null ) {
+      draft.setFitness( new DraftFitness( draft ) );
+    }
+    final DraftFitness fitness = draft.getFitness();
+    int n = draft.getPackCount();
+    final double[] imbalance = new double[ n ];
+    Integer[] order = new Integer[ n ];
+    for( int p=0; p<n; p++ ) {
+      imbalance[ p ] = fitness.getImbalance( fitness.getPackIndex( draft.getPack( p ) ) );
+      order[ p ] = p;
+    }
+    Arrays.sort( order, new Comparator<Integer>() {
+      public int compare( Integer left, Integer right ) {
+        return Double.compare( imbalance[ left ], imbalance[ right ] );
+      }
+    } );
+    return order;
+  }
+
+  private static Set<String> getRarityGroup( Config config, String rarity ) {
+    for( Map.Entry<Set<String>,Integer> pair: config.getPackComposition().entrySet() ) {
+      if( pair.getKey().contains( rarity ) ) {
+        return pair.getKey();
+      }
+    }
+    throw new IllegalStateException( String.format( "Rarity %s is not in pack composition.", rarity ) );
+  }
+
+}
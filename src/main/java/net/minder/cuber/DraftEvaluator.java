@@ -20,15 +20,30 @@ package net.minder.cuber;
 import org.uncommons.watchmaker.framework.FitnessEvaluator;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DraftEvaluator implements FitnessEvaluator<Draft> {
 
+  private final AtomicLong evaluations = new AtomicLong();
+
   public double getFitness( Draft draft, List<? extends Draft> list ) {
-    DraftFitness fitness = new DraftFitness( draft );
-    draft.setFitness( fitness );
+    evaluations.incrementAndGet();
+    // The mutator keeps the fitness of a draft current as it swaps cards so it only needs computing once.
+    DraftFitness fitness = draft.getFitness();
+    if( fitness == null ) {
+      fitness = new DraftFitness( draft );
+      draft.setFitness( fitness );
+    }
     return fitness.getAggregate();
   }
 
+  /**
+   * The number of candidates scored so far, whether or not their fitness had to be computed.
+   */
+  public long getEvaluations() {
+    return evaluations.get();
+  }
+
   public boolean isNatural() {
     return false;
   }
@@ -0,0 +1,64 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.minder.cuber;
+
+import org.uncommons.watchmaker.framework.CandidateFactory;
+import org.uncommons.watchmaker.framework.EvaluatedCandidate;
+import org.uncommons.watchmaker.framework.EvolutionaryOperator;
+import org.uncommons.watchmaker.framework.FitnessEvaluator;
+import org.uncommons.watchmaker.framework.GenerationalEvolutionEngine;
+import org.uncommons.watchmaker.framework.SelectionStrategy;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generational engine that keeps hold of the latest population so observers can checkpoint all of it.
+ * Observers only ever see population statistics and the best candidate.
+ */
+public class DraftEvolutionEngine extends GenerationalEvolutionEngine<Draft> {
+
+  private volatile List<EvaluatedCandidate<Draft>> population;
+
+  public DraftEvolutionEngine(
+      CandidateFactory<Draft> factory,
+      EvolutionaryOperator<Draft> operator,
+      FitnessEvaluator<? super Draft> evaluator,
+      SelectionStrategy<? super Draft> selection,
+      Random random ) {
+    super( factory, operator, evaluator, selection, random );
+    this.population = null;
+  }
+
+  @Override
+  protected List<EvaluatedCandidate<Draft>> nextEvolutionStep(
+      List<EvaluatedCandidate<Draft>> evaluatedPopulation, int eliteCount, Random random ) {
+    List<EvaluatedCandidate<Draft>> next = super.nextEvolutionStep( evaluatedPopulation, eliteCount, random );
+    population = next;
+    return next;
+  }
+
+  /**
+   * Returns the population produced by the last generation, which is the one observers were last told about,
+   * or null before the first generation.
+   */
+  public List<EvaluatedCandidate<Draft>> getPopulation() {
+    return population;
+  }
+
+}
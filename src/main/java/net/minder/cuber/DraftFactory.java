@@ -17,22 +17,94 @@
  */
 package net.minder.cuber;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
 
 public class DraftFactory extends org.uncommons.watchmaker.framework.factories.AbstractCandidateFactory<Draft> {
 
   private String name;
   private Config config;
-  private Stack box;
+  private Inventory inventory;
+  private Workers workers;
 
-  public DraftFactory( String name, Config config, Stack box ) {
+  public DraftFactory( String name, Config config, Box box ) {
+    this( name, config, box, null );
+  }
+
+  public DraftFactory( String name, Config config, Box box, Workers workers ) {
     this.name = name;
     this.config = config;
-    this.box = box;
+    // Every candidate shares the same inventory and only records where each card was dealt.
+    this.inventory = new Inventory( box );
+    this.workers = workers;
+  }
+
+  public Inventory getInventory() {
+    return inventory;
   }
 
   public Draft generateRandomCandidate( Random random ) {
-    return new Draft( name, config, box.copy(), random );
+    Draft draft = new Draft( name, config, inventory, random );
+    // Score the candidate where it was dealt so the engine's evaluation is only a lookup.
+    draft.setFitness( new DraftFitness( draft ) );
+    return draft;
+  }
+
+  /**
+   * Deals a draft without randomizing the deal.  With greedy seeding this is the most balanced starting point.
+   */
+  public Draft generateBalancedCandidate( Random random ) {
+    Draft draft = new Draft( name, config, inventory, random, false );
+    draft.setFitness( new DraftFitness( draft ) );
+    return draft;
+  }
+
+  @Override
+  public List<Draft> generateInitialPopulation( int populationSize, Random random ) {
+    return generateInitialPopulation( populationSize, new ArrayList<Draft>(), random );
+  }
+
+  @Override
+  public List<Draft> generateInitialPopulation( int populationSize, Collection<Draft> seedCandidates, Random random ) {
+    if( seedCandidates.size() > populationSize ) {
+      throw new IllegalArgumentException( "Too many seed candidates for specified population size." );
+    }
+    List<Draft> population = new ArrayList<Draft>( populationSize );
+    population.addAll( seedCandidates );
+    int count = populationSize - seedCandidates.size();
+    // A greedy population is led by the unperturbed deal and the rest are randomized around it.
+    if( count > 0 && seedCandidates.isEmpty() && Config.SEEDING_GREEDY.equals( config.getSeeding() ) ) {
+      population.add( generateBalancedCandidate( random ) );
+      count--;
+    }
+    if( workers == null || !workers.isParallel() ) {
+      for( int i=0; i<count; i++ ) {
+        population.add( generateRandomCandidate( random ) );
+      }
+    } else {
+      Random[] streams = workers.split( random );
+      List<Callable<List<Draft>>> tasks = new ArrayList<Callable<List<Draft>>>();
+      for( int t=0; t<streams.length; t++ ) {
+        final Random stream = streams[ t ];
+        final int size = count / streams.length + ( t < count % streams.length ? 1 : 0 );
+        tasks.add( new Callable<List<Draft>>() {
+          public List<Draft> call() {
+            List<Draft> drafts = new ArrayList<Draft>( size );
+            for( int i=0; i<size; i++ ) {
+              drafts.add( generateRandomCandidate( stream ) );
+            }
+            return drafts;
+          }
+        } );
+      }
+      for( List<Draft> drafts: workers.invoke( tasks ) ) {
+        population.addAll( drafts );
+      }
+    }
+    return population;
   }
 
 }
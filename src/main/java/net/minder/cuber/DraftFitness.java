@@ -17,9 +17,9 @@
  */
 package net.minder.cuber;
 
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 
 public class DraftFitness {
@@ -28,27 +28,210 @@ public class DraftFitness {
 
   private static Map<String,Double> METRIC_WEIGHTING = new HashMap<String,Double>();
   static {
-    METRIC_WEIGHTING.put( Pack.WEIGHT, Double.valueOf( 0.0f ) );
-    METRIC_WEIGHTING.put( Pack.CREATURE, Double.valueOf( 2.0f ) );
-    METRIC_WEIGHTING.put( Pack.COMMON, Double.valueOf( 0.0f ) );
-    METRIC_WEIGHTING.put( Pack.UNCOMMON, Double.valueOf( 0.0f ) );
-    METRIC_WEIGHTING.put( Pack.RARE, Double.valueOf( 0.0f ) );
-    METRIC_WEIGHTING.put( Pack.MYTHIC, Double.valueOf( 0.0f ) );
+    METRIC_WEIGHTING.put( Stack.WEIGHT, Double.valueOf( 0.0f ) );
+    METRIC_WEIGHTING.put( Stack.CREATURE, Double.valueOf( 2.0f ) );
+    METRIC_WEIGHTING.put( Stack.COMMON, Double.valueOf( 0.0f ) );
+    METRIC_WEIGHTING.put( Stack.UNCOMMON, Double.valueOf( 0.0f ) );
+    METRIC_WEIGHTING.put( Stack.RARE, Double.valueOf( 0.0f ) );
+    METRIC_WEIGHTING.put( Stack.MYTHIC, Double.valueOf( 0.0f ) );
+  }
+
+  private static final int METRIC_COUNT = Draft.METRIC_NAMES.length;
+
+  private static final double[] WEIGHTS = new double[ METRIC_COUNT ];
+  private static final int[] COLUMNS = new int[ METRIC_COUNT ];
+  static {
+    for( int m=0; m<METRIC_COUNT; m++ ) {
+      String name = Draft.METRIC_NAMES[ m ];
+      WEIGHTS[ m ] = getWeight( name );
+      COLUMNS[ m ] = OUTLIER_CANDIDATES.contains( name ) ? Catalog.getColumn( name ) : -1;
+    }
   }
 
   private Draft draft;
-  private Map<String,Metric> metrics;
+  private String[] packNames;
+
+  // Per metric sums of each pack plus the running total and total of squares across packs.
+  private double[][] sums;
+  private double[] total;
+  private double[] totalSq;
+
+  private int[] packDups;
+  private int packDupTotal;
+  private int packCardTotal;
+
+  private double[] deviations;
   private double aggregate;
+  private int outlier;
+  private Metric outlierMetric;
 
   public DraftFitness( Draft draft ) {
     this.draft = draft;
-    this.metrics = new HashMap<String,Metric>();
-    for( String n: Draft.METRIC_NAMES ) {
-      Metric m = computeMetric( draft, n );
-      this.metrics.put( n, m );
-      double d = computeDeviation( m );
-      this.aggregate += d;
+    List<Pack> packs = draft.getPacks();
+    int n = packs.size();
+    this.packNames = new String[ n ];
+    this.sums = new double[ METRIC_COUNT ][ n ];
+    this.total = new double[ METRIC_COUNT ];
+    this.totalSq = new double[ METRIC_COUNT ];
+    this.packDups = new int[ n ];
+    this.deviations = new double[ METRIC_COUNT ];
+    for( int p=0; p<n; p++ ) {
+      Pack pack = packs.get( p );
+      packNames[ p ] = pack.getName();
+      for( int m=0; m<METRIC_COUNT; m++ ) {
+        if( COLUMNS[ m ] >= 0 ) {
+          double s = pack.getSum( COLUMNS[ m ] );
+          sums[ m ][ p ] = s;
+          total[ m ] += s;
+          totalSq[ m ] += s * s;
+        }
+      }
+      packDups[ p ] = pack.getDuplication();
+      packDupTotal += packDups[ p ];
+      packCardTotal += pack.getCount();
+    }
+    for( int m=0; m<METRIC_COUNT; m++ ) {
+      deviations[ m ] = computeDeviation( m );
+    }
+    refresh();
+  }
+
+  private DraftFitness( DraftFitness fitness, Draft draft ) {
+    this.draft = draft;
+    this.packNames = fitness.packNames;
+    this.sums = new double[ METRIC_COUNT ][];
+    for( int m=0; m<METRIC_COUNT; m++ ) {
+      sums[ m ] = fitness.sums[ m ].clone();
+    }
+    this.total = fitness.total.clone();
+    this.totalSq = fitness.totalSq.clone();
+    this.packDups = fitness.packDups.clone();
+    this.packDupTotal = fitness.packDupTotal;
+    this.packCardTotal = fitness.packCardTotal;
+    this.deviations = fitness.deviations.clone();
+    this.aggregate = fitness.aggregate;
+    this.outlier = fitness.outlier;
+    this.outlierMetric = null;
+  }
+
+  /**
+   * Creates an independent copy of this fitness for a copy of its draft.
+   * The pack names never change so they are shared.
+   */
+  public DraftFitness copy( Draft draft ) {
+    return new DraftFitness( this, draft );
+  }
+
+  /**
+   * Applies the removal of one card from, and the addition of another card to, a single pack.
+   * Only the sums of that pack change so each metric is brought up to date in constant time.
+   */
+  public void update( Pack pack, Card removed, Card added ) {
+    int p = pack.getIndex();
+    for( int m=0; m<METRIC_COUNT; m++ ) {
+      int c = COLUMNS[ m ];
+      if( c >= 0 ) {
+        double before = sums[ m ][ p ];
+        double after = before - removed.getValue( c ) + added.getValue( c );
+        if( after != before ) {
+          sums[ m ][ p ] = after;
+          total[ m ] += after - before;
+          totalSq[ m ] += after * after - before * before;
+          deviations[ m ] = computeDeviation( m );
+        }
+      }
+    }
+    int d = pack.getDuplication();
+    packDupTotal += d - packDups[ p ];
+    packDups[ p ] = d;
+    refresh();
+  }
+
+  /**
+   * Returns a lower bound on the aggregate of any deal of the same cards into the same number of packs.
+   * The totals of each metric are fixed by which cards are dealt.  When a metric is whole for every card in the
+   * inventory its total T cannot be split evenly unless n divides it, so the best split has r = T mod n packs one
+   * above the rest and a sample variance of r(n-r)/(n(n-1)).  Other metrics are bounded by zero.
+   */
+  public double getLowerBound() {
+    int n = packNames.length;
+    double result = 0.0d;
+    if( n > 1 ) {
+      for( int m=0; m<METRIC_COUNT; m++ ) {
+        int c = COLUMNS[ m ];
+        if( c >= 0 && draft.getInventory().isIntegral( c ) ) {
+          long t = Math.round( total[ m ] );
+          long r = ( ( t % n ) + n ) % n;
+          double var = (double)( r * ( n - r ) ) / ( (double)n * ( n - 1 ) );
+          result += computeDeviation( var, total[ m ] / n, WEIGHTS[ m ] );
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns how far pack p is from the average pack, weighted and scaled as in the aggregate.
+   */
+  public double getImbalance( int p ) {
+    int n = packNames.length;
+    double result = 0.0d;
+    for( int m=0; m<METRIC_COUNT; m++ ) {
+      if( COLUMNS[ m ] >= 0 && total[ m ] != 0.0d ) {
+        double mean = total[ m ] / n;
+        double d = sums[ m ][ p ] - mean;
+        result += WEIGHTS[ m ] * d * d / mean;
+      }
     }
+    return result;
+  }
+
+  public int getPackIndex( Pack pack ) {
+    return pack.getIndex();
+  }
+
+  /**
+   * Returns the aggregate the draft would have if card a of pack p and card b of pack q were exchanged.
+   * The totals do not change when cards move between packs so only the sums of squares are adjusted.
+   * The duplication metrics never vary so they are left out.
+   */
+  public double evaluateExchange( int p, Card a, int q, Card b ) {
+    double result = aggregate;
+    for( int m=0; m<METRIC_COUNT; m++ ) {
+      int c = COLUMNS[ m ];
+      if( c >= 0 ) {
+        double d = b.getValue( c ) - a.getValue( c );
+        if( d != 0.0d ) {
+          double sp = sums[ m ][ p ];
+          double sq = sums[ m ][ q ];
+          double sumSq = totalSq[ m ] - sp * sp - sq * sq + ( sp + d ) * ( sp + d ) + ( sq - d ) * ( sq - d );
+          result += computeDeviation( m, sumSq ) - deviations[ m ];
+        }
+      }
+    }
+    return result;
+  }
+
+  private void refresh() {
+    double a = 0.0d;
+    int o = 0;
+    for( int m=0; m<METRIC_COUNT; m++ ) {
+      a += deviations[ m ];
+      if( Double.compare( deviations[ m ], deviations[ o ] ) > 0 ) {
+        o = m;
+      }
+    }
+    aggregate = a;
+    outlier = o;
+    outlierMetric = null;
+  }
+
+  static int getMetricColumn( int m ) {
+    return COLUMNS[ m ];
+  }
+
+  static double getMetricWeight( int m ) {
+    return WEIGHTS[ m ];
   }
 
   private static double getWeight( final String metric ) {
@@ -56,25 +239,27 @@ public class DraftFitness {
     return d == null ? 1.0d : d.doubleValue();
   }
 
-  private static Metric computeMetric( Draft draft, String name ) {
-    Metric metric;
-    if( OUTLIER_CANDIDATES.contains( name ) ) {
-      metric = draft.getMetricTotal( name );
+  private double computeDeviation( int m ) {
+    double num;
+    double den;
+    if( COLUMNS[ m ] >= 0 ) {
+      return computeDeviation( m, totalSq[ m ] );
     } else {
-      metric = new Metric( name );
-      if ( name.equals( Draft.DRAFT_DUP ) ) {
-        metric.add( draft.getName(), draft.getDraftDuplication() );
-      } else if ( name.equals( Draft.PACK_DUP ) ) {
-        metric.add( draft.getName(), draft.getPackDuplication() );
-      }
+      // The duplication metrics hold a single draft wide value so they never vary.
+      num = 0.0d;
+      den = getDuplication( m );
     }
-    return metric;
+    return computeDeviation( num, den, WEIGHTS[ m ] );
   }
 
-  private static double computeDeviation( Metric metric ) {
-    double mul = getWeight( metric.getName() );
-    double num = metric.getVar(); //metric.getStd();
-    double den = metric.getAvg();
+  private double computeDeviation( int m, double sq ) {
+    int n = packNames.length;
+    double num = n > 1 ? Math.max( 0.0d, ( sq - total[ m ] * total[ m ] / n ) / ( n - 1 ) ) : 0.0d;
+    double den = total[ m ] / n;
+    return computeDeviation( num, den, WEIGHTS[ m ] );
+  }
+
+  private static double computeDeviation( double num, double den, double mul ) {
     double var;
     if( den == 0.0f ) {
       if( num == 0.0f ) {
@@ -89,41 +274,50 @@ public class DraftFitness {
     return dev;
   }
 
+  private double getDuplication( int m ) {
+    double d = 0.0d;
+    if( Draft.PACK_DUP.equals( Draft.METRIC_NAMES[ m ] ) ) {
+      d = packCardTotal == 0 ? Double.NaN : (double)packDupTotal / packCardTotal;
+    } else if( Draft.DRAFT_DUP.equals( Draft.METRIC_NAMES[ m ] ) ) {
+      d = draft.getDraftDuplication();
+    }
+    return d;
+  }
+
+  private Metric toMetric( int m ) {
+    Metric metric = new Metric( Draft.METRIC_NAMES[ m ] );
+    if( COLUMNS[ m ] >= 0 ) {
+      for( int p=0; p<packNames.length; p++ ) {
+        metric.add( packNames[ p ], sums[ m ][ p ] );
+      }
+    } else {
+      metric.add( draft.getName(), getDuplication( m ) );
+    }
+    return metric;
+  }
+
   public double getAggregate() {
     return aggregate;
   }
 
   public Metric getOutlierMetric() {
-    Metric m = null;
-    for( Metric i: metrics.values() ) {
-      if( m == null ) {
-        m = i;
-      } else {
-        double md = computeDeviation( m );
-        double id = computeDeviation( i );
-        int c = Double.compare( id, md );
-        if( c > 0 ) {
-          m = i;
-        }
-      }
+    if( outlierMetric == null ) {
+      outlierMetric = toMetric( outlier );
     }
-    return m;
+    return outlierMetric;
   }
 
   public String toString() {
     StringBuilder s = new StringBuilder();
     s.append( Double.toString( getAggregate() ) );
     s.append( "[" );
-    boolean first = true;
-    for( Metric m: metrics.values() ) {
-      if( !first ) {
+    for( int m=0; m<METRIC_COUNT; m++ ) {
+      if( m > 0 ) {
         s.append( "," );
-      } else {
-        first = false;
       }
-      s.append( m.getName() );
+      s.append( Draft.METRIC_NAMES[ m ] );
       s.append( "=" );
-      s.append( String.format( "%.2f", computeDeviation( m ) ) );
+      s.append( String.format( "%.2f", deviations[ m ] ) );
     }
     s.append( "]" );
     return s.toString();
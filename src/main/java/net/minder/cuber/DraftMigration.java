@@ -0,0 +1,77 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.minder.cuber;
+
+import org.uncommons.watchmaker.framework.EvaluatedCandidate;
+import org.uncommons.watchmaker.framework.islands.Migration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Ring migration of the best drafts of each island into the place of the worst drafts of the next island.
+ * Migrants are copied because a draft can appear more than once in a population and islands evolve in parallel.
+ */
+public class DraftMigration implements Migration {
+
+  private boolean natural;
+
+  public DraftMigration( boolean natural ) {
+    this.natural = natural;
+  }
+
+  public <T> void migrate( List<List<EvaluatedCandidate<T>>> islandPopulations, int migrantCount, Random rng ) {
+    int n = islandPopulations.size();
+    List<List<EvaluatedCandidate<T>>> migrants = new ArrayList<List<EvaluatedCandidate<T>>>( n );
+    for( List<EvaluatedCandidate<T>> population: islandPopulations ) {
+      sort( population );
+      int m = Math.min( migrantCount, population.size() );
+      List<EvaluatedCandidate<T>> best = new ArrayList<EvaluatedCandidate<T>>( m );
+      for( int i=0; i<m; i++ ) {
+        EvaluatedCandidate<T> candidate = population.get( i );
+        best.add( new EvaluatedCandidate<T>( copy( candidate.getCandidate() ), candidate.getFitness() ) );
+      }
+      migrants.add( best );
+    }
+    for( int i=0; i<n; i++ ) {
+      List<EvaluatedCandidate<T>> population = islandPopulations.get( ( i + 1 ) % n );
+      List<EvaluatedCandidate<T>> best = migrants.get( i );
+      for( int j=0, s=population.size(); j<best.size() && j<s; j++ ) {
+        population.set( s - 1 - j, best.get( j ) );
+      }
+    }
+  }
+
+  private <T> void sort( List<EvaluatedCandidate<T>> population ) {
+    Collections.sort( population, new Comparator<EvaluatedCandidate<T>>() {
+      public int compare( EvaluatedCandidate<T> left, EvaluatedCandidate<T> right ) {
+        int c = Double.compare( left.getFitness(), right.getFitness() );
+        return natural ? -c : c;
+      }
+    } );
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private static <T> T copy( T candidate ) {
+    return candidate instanceof Draft ? (T)( (Draft)candidate ).copy() : candidate;
+  }
+
+}
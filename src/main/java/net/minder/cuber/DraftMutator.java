@@ -17,87 +17,159 @@
  */
 package net.minder.cuber;
 
-import com.googlecode.cqengine.attribute.Attribute;
 import org.uncommons.watchmaker.framework.EvolutionaryOperator;
-import org.w3c.dom.Attr;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
-
-import static com.googlecode.cqengine.query.QueryFactory.and;
-import static com.googlecode.cqengine.query.QueryFactory.descending;
-import static com.googlecode.cqengine.query.QueryFactory.equal;
-import static com.googlecode.cqengine.query.QueryFactory.greaterThan;
-import static com.googlecode.cqengine.query.QueryFactory.greaterThanOrEqualTo;
-import static com.googlecode.cqengine.query.QueryFactory.lessThan;
-import static com.googlecode.cqengine.query.QueryFactory.lessThanOrEqualTo;
-import static com.googlecode.cqengine.query.QueryFactory.orderBy;
-import static com.googlecode.cqengine.query.QueryFactory.queryOptions;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DraftMutator implements EvolutionaryOperator<Draft> {
 
-  private static HashMap<String,Attribute<Card,? extends Comparable<?>>> CARD_ATTRIBUTES =
-      new HashMap<String,Attribute<Card,? extends Comparable<?>>>();
-  static {
-    CARD_ATTRIBUTES.put( Stack.MULTI, Card.MANA_ANY );
-    CARD_ATTRIBUTES.put( Stack.WHITE, Card.MANA_WHITE );
-    CARD_ATTRIBUTES.put( Stack.BLUE, Card.MANA_BLUE );
-    CARD_ATTRIBUTES.put( Stack.BLACK, Card.MANA_BLACK );
-    CARD_ATTRIBUTES.put( Stack.RED, Card.MANA_RED );
-    CARD_ATTRIBUTES.put( Stack.GREEN, Card.MANA_GREEN );
-    CARD_ATTRIBUTES.put( Stack.COST, Card.MANA_TOTAL );
+  // Improvements smaller than this are rounding noise in the incrementally maintained sums.
+  private static final double EXCHANGE_EPSILON = 1.0e-9d;
+
+  public static final int GUIDED = 0;
+  public static final int RANDOM = 1;
+  public static final int MULTI_SWAP = 2;
+  public static final int EXCHANGE = 3;
+  public static final int RELAXED = 4;
+  public static final String[] OPERATOR_NAMES = { "guided", "random", "multi-swap", "exchange", "relaxed" };
+
+  // The number of random swaps made by the multi-swap operator.
+  private static final int MULTI_SWAP_COUNT = 3;
 
-    CARD_ATTRIBUTES.put( Stack.CREATURE, Card.CREATURE );
-    CARD_ATTRIBUTES.put( Stack.ARTIFACT, Card.ARTIFACT );
-    CARD_ATTRIBUTES.put( Stack.ENCHANTMENT, Card.ENCHANTMENT );
-    CARD_ATTRIBUTES.put( Stack.INSTANT, Card.INSTANT );
-    CARD_ATTRIBUTES.put( Stack.SORCERY, Card.SORCERY );
-    CARD_ATTRIBUTES.put( Stack.LAND, Card.LAND );
+  private Workers workers;
+  private OperatorScheduler scheduler;
+  // The number of guided mutations that found no replacement and left the pack as it was.
+  private AtomicLong misses;
 
-    CARD_ATTRIBUTES.put( Stack.COMMON, Card.COMMON );
-    CARD_ATTRIBUTES.put( Stack.UNCOMMON, Card.UNCOMMON );
-    CARD_ATTRIBUTES.put( Stack.RARE, Card.RARE );
-    CARD_ATTRIBUTES.put( Stack.MYTHIC, Card.MYTHIC );
+  public DraftMutator() {
+    this( null );
+  }
 
-    CARD_ATTRIBUTES.put( Stack.OFFENSE, Card.OFFENSE );
-    CARD_ATTRIBUTES.put( Stack.DEFENSE, Card.DEFENSE );
-    CARD_ATTRIBUTES.put( Stack.STRENGTH, Card.STRENGTH );
+  public DraftMutator( Workers workers ) {
+    this.workers = workers;
+    this.scheduler = new OperatorScheduler( OPERATOR_NAMES );
+    this.misses = new AtomicLong();
+  }
 
-    CARD_ATTRIBUTES.put( Stack.WEIGHT, Card.WEIGHT );
+  public OperatorScheduler getScheduler() {
+    return scheduler;
   }
 
+  public long getMisses() {
+    return misses.get();
+  }
 
   public List<Draft> apply( List<Draft> input, Random random ) {
-    List output = new ArrayList( input.size() );
-    for( Draft draft: input ) {
-      output.add( apply( draft, random ) );
+    if( workers == null || !workers.isParallel() ) {
+      List output = new ArrayList( input.size() );
+      for( Draft draft: input ) {
+        output.add( apply( draft, random ) );
+      }
+      return output;
     }
-    return output;
+    return applyParallel( input, random );
   }
 
-  public Draft apply( Draft draft, Random random ) {
-    Metric outlier = draft.getFitness().getOutlierMetric();
-    Pack pack = pickOutlierPack( outlier, draft, random );
-    if( Stack.METRICS.contains( outlier.getName() ) ) {
-      applyGuidedMutation( outlier, draft, pack, random );
-    } else {
-      applyRandomMutation( draft, pack, random );
+  private List<Draft> applyParallel( List<Draft> input, Random random ) {
+    // Selection can return the same draft more than once.  Each distinct draft is given to exactly one
+    // worker, which makes all of its offspring, so a draft and its copy-on-write clones stay on one thread.
+    final Map<Draft,List<Integer>> occurrences = new IdentityHashMap<Draft,List<Integer>>();
+    final List<Draft> distinct = new ArrayList<Draft>();
+    for( int i=0; i<input.size(); i++ ) {
+      Draft draft = input.get( i );
+      List<Integer> positions = occurrences.get( draft );
+      if( positions == null ) {
+        positions = new ArrayList<Integer>( 1 );
+        occurrences.put( draft, positions );
+        distinct.add( draft );
+      }
+      positions.add( i );
+    }
+    final Draft[] output = new Draft[ input.size() ];
+    Random[] streams = workers.split( random );
+    // Each stream picks operators from its own copy of the scheduler so the choices depend only on the stream.
+    final OperatorScheduler[] forks = new OperatorScheduler[ streams.length ];
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    for( int t=0; t<streams.length; t++ ) {
+      final Random stream = streams[ t ];
+      final OperatorScheduler fork = forks[ t ] = scheduler.fork();
+      final int from = distinct.size() * t / streams.length;
+      final int to = distinct.size() * ( t + 1 ) / streams.length;
+      tasks.add( new Callable<Void>() {
+        public Void call() {
+          for( int d=from; d<to; d++ ) {
+            Draft draft = distinct.get( d );
+            for( int i: occurrences.get( draft ) ) {
+              output[ i ] = apply( draft, stream, fork );
+            }
+          }
+          return null;
+        }
+      } );
     }
+    workers.invoke( tasks );
+    scheduler.merge( forks );
+    return new ArrayList<Draft>( Arrays.asList( output ) );
+  }
+
+  public Draft apply( Draft parent, Random random ) {
+    return apply( parent, random, scheduler );
+  }
+
+  private Draft apply( Draft parent, Random random, OperatorScheduler scheduler ) {
+    // Selection can return the same draft more than once so each offspring is a copy-on-write clone.
+    Draft draft = parent.copy();
+    if( draft.getFitness() == null ) {
+      // Drafts that have not been through the evaluator yet have no fitness.
+      draft.setFitness( new DraftFitness( draft ) );
+    }
+    double before = draft.getFitness().getAggregate();
+    long start = System.nanoTime();
+    int operator = scheduler.select( random );
+    apply( operator, draft, random );
+    scheduler.reward( operator, before - draft.getFitness().getAggregate(), System.nanoTime() - start );
     return draft;
   }
 
-  private static Card getRandomCard( List<Card> cards, Random random ) {
-    int s = cards.size();
-    if( s == 0 ) {
-      throw new IllegalStateException( String.format( "Card list is empty." ) );
+  public void apply( int operator, Draft draft, Random random ) {
+    Metric outlier = draft.getFitness().getOutlierMetric();
+    Pack pack = pickOutlierPack( outlier, draft, random );
+    // Only the metrics have a direction to guide by.  The others fall back to random swaps.
+    boolean guided = Stack.METRICS.contains( outlier.getName() );
+    switch( operator ) {
+      case GUIDED:
+        if( guided ) {
+          applyGuidedMutation( outlier, draft, pack, random );
+        } else {
+          applyRandomMutation( draft, pack, random );
+        }
+        break;
+      case RANDOM:
+        applyRandomMutation( draft, pack, random );
+        break;
+      case MULTI_SWAP:
+        for( int i=0; i<MULTI_SWAP_COUNT; i++ ) {
+          applyRandomMutation( draft, draft.getPack( random.nextInt( draft.getPackCount() ) ), random );
+        }
+        break;
+      case EXCHANGE:
+        applyExchangeMutation( draft, pack );
+        break;
+      case RELAXED:
+        applyRelaxedMutation( outlier, draft, pack, random );
+        break;
+      default:
+        throw new IllegalStateException( String.format( "Unknown operator %d.", operator ) );
     }
-    int i = random.nextInt( s );
-    Card card = cards.get( i );
-    return card;
   }
 
   public Pack pickOutlierPack( Metric outlier, Draft draft, Random random ) {
@@ -117,17 +189,11 @@ public class DraftMutator implements EvolutionaryOperator<Draft> {
   }
 
   private Card pickOutlierCard( Metric metric, Pack pack, Random random ) {
-    String name = metric.getName();
     double draftAvg = metric.getAvg();
-    double packAvg = pack.getMetrics().get( name ).getAvg();
-    Attribute attr = CARD_ATTRIBUTES.get( name );
+    int column = Catalog.getColumn( metric.getName() );
+    double packAvg = pack.getAvg( column );
     int dir = Double.compare( draftAvg, packAvg );
-    Card card;
-    if( dir > 0 ) {
-      card = pack.getCard( greaterThanOrEqualTo( attr, packAvg ), queryOptions( orderBy( descending( attr ) ) ) );
-    } else {
-      card = pack.getCard( lessThanOrEqualTo( attr, packAvg ), queryOptions( orderBy( descending( attr ) ) ) );
-    }
+    Card card = pack.getMaxCard( column, packAvg, dir > 0 );
 //    if( card == null ) {
 //      card = getRandomCard( pack.getCardList( equal( attr, packAvg ) ), random );
 //    }
@@ -137,104 +203,107 @@ public class DraftMutator implements EvolutionaryOperator<Draft> {
     return card;
   }
 
-  private void swapCards( Stack stackA, Card cardA, Stack stackB, Card cardB ) {
-    stackA.delCard( cardA );
-    stackB.delCard( cardB );
-    stackB.addCard( cardA );
-    stackA.addCard( cardB );
-  }
-
-  public int compareMetricToCard( Metric metric, Card card ) {
-    Attribute<Card,? extends Comparable> a = CARD_ATTRIBUTES.get( metric.getName() );
-    Iterable i = a.getValues( card, null );
-    Object o = i.iterator().next();
-    Double d = (Double)o;
-    int c = Double.compare( d.doubleValue(), metric.getAvg().doubleValue() );
-    return c;
-  }
-
   public void applyGuidedMutation( Metric outlier, Draft draft, Pack pack, Random random ) {
-    Stack box = draft.getBox();
     // Find the card within the pack that is the worst offender of the outlier metric.
     Card packCard = pickOutlierCard( outlier, pack, random );
-    //TODO Pick a similar random card with an increased or decreased level of the correct metric.
-    // Iterate while relaxing criteria until we find one.
-    int dir = compareMetricToCard( outlier, packCard );
-    Card boxCard = selectReplacement( box, packCard, -dir, random );
-    //Card boxCard = box.getRandomCard( random );
-    swapCards( pack, packCard, box, boxCard );
+    // Pick a similar random card with less of the metric if the pack is above the draft average or more if below.
+    int column = Catalog.getColumn( outlier.getName() );
+    int dir = Double.compare( outlier.getAvg(), pack.getSum( column ) );
+    Card boxCard = selectReplacement( draft, packCard, column, dir, random );
+    draft.swapCards( pack, packCard, boxCard );
+  }
+
+  /**
+   * Applies the best exchange of a card of the pack with a card of the same rarity in any other pack.
+   * Returns false, leaving the draft unchanged, if no exchange improves the fitness.
+   */
+  public boolean applyExchangeMutation( Draft draft, Pack pack ) {
+    DraftFitness fitness = draft.getFitness();
+    Catalog catalog = draft.getInventory().getCatalog();
+    int p = fitness.getPackIndex( pack );
+    double best = fitness.getAggregate() - EXCHANGE_EPSILON;
+    Card bestCard = null;
+    Pack bestPack = null;
+    Card bestOther = null;
+    for( Pack other: draft.getPacks() ) {
+      if( other == pack ) {
+        continue;
+      }
+      int q = fitness.getPackIndex( other );
+      for( int j=0, m=other.getCount(); j<m; j++ ) {
+        Card b = other.getCard( j );
+        int rarity = catalog.getRarity( b.ordinal );
+        for( int i=0, n=pack.getCount(); i<n; i++ ) {
+          Card a = pack.getCard( i );
+          if( catalog.getRarity( a.ordinal ) == rarity ) {
+            double f = fitness.evaluateExchange( p, a, q, b );
+            if( f < best ) {
+              best = f;
+              bestCard = a;
+              bestPack = other;
+              bestOther = b;
+            }
+          }
+        }
+      }
+    }
+    if( bestCard == null ) {
+      return false;
+    }
+    draft.swapPackCards( pack, bestCard, bestPack, bestOther );
+    return true;
   }
 
   public void applyRandomMutation( Draft draft, Pack pack, Random random ) {
-    Stack box = draft.getBox();
     Card packCard = pack.getRandomCard( random );
-    Card boxCard = box.getRandomCard( random );
-    swapCards( pack, packCard, box, boxCard );
-  }
-
-//  public Draft apply2( Draft draft, Random random ) {
-//    Stack box = draft.getBox();
-//    Collections.sort( draft.getPacks(), Pack.WEIGHT_COMPARATOR );
-//
-//    Pack fixPack = draft.getFirstPack();
-//    List<Card> fixCards = fixPack.getCardList();
-//    Collections.sort( fixCards, Card.WEIGHT_COMPARATOR );
-//
-//    Card fixCard = fixCards.get( 0 );
-//    Card replacement = selectReplacement( box, fixCard, false );
-//    fixPack.delCard( fixCard );
-//    box.delCard( replacement );
-//    fixPack.addCard( replacement );
-//    box.addCard( fixCard );
-//
-//    fixPack = draft.getLastPack();
-//    fixCards = fixPack.getCardList();
-//    Collections.sort( fixCards, Card.WEIGHT_COMPARATOR );
-//    fixCard = fixCards.get( fixCards.size()-1 );
-//    replacement = selectReplacement( box, fixCard, true );
-//    fixPack.delCard( fixCard );
-//    box.delCard( replacement );
-//    fixPack.addCard( replacement );
-//    box.addCard( fixCard );
-//    return draft;
-//  }
-
-  private static Card selectReplacement( List<Card> replacements, Card original, int dir, Random random ) {
-    Card replacement = null;
-    if( replacements != null && !replacements.isEmpty() ) {
-      replacement = getRandomCard( replacements, random );
-    }
-//    Card replacement = null;
-//    double originalWeight = original.getTotalWeight();
-//    Collections.shuffle( replacements );
-//    for( int i=0; i<replacements.size(); i++ ) {
-//      replacement = replacements.get( i );
-//      double replacementWeight = replacement.getTotalWeight();
-//      if( dir > 0 && replacementWeight >= originalWeight ) {
-//        break;
-//      } else if( dir < 0 && replacementWeight <= originalWeight ) {
-//        break;
-//      } else {
-//        replacement = null;
-//      }
-//    }
-    return replacement;
+    // Keep the rarity so the pack composition holds, unless the pool has none of it left.
+    Inventory inventory = draft.getInventory();
+    Card boxCard = draft.getPool().draw( inventory.getRarityBuckets( packCard.definition.rarity ), random );
+    if( boxCard == null ) {
+      boxCard = draft.getRandomPoolCard( random );
+    }
+    draft.swapCards( pack, packCard, boxCard );
   }
 
-  private static Card selectReplacement( Stack stack, Card original, int dir, Random random ) {
-    List<Card> replacements;
-    Card replacement;
+  /**
+   * Replaces the worst offender of the outlier metric, or a random card, with any pool card of the same rarity.
+   * Unlike the guided mutation the replacement need not have the same type or move the metric the right way.
+   */
+  public void applyRelaxedMutation( Metric outlier, Draft draft, Pack pack, Random random ) {
+    Card packCard = null;
+    if( Stack.METRICS.contains( outlier.getName() ) ) {
+      packCard = pickOutlierCard( outlier, pack, random );
+    }
+    if( packCard == null ) {
+      packCard = pack.getRandomCard( random );
+    }
+    Card boxCard = draft.getPool().draw( draft.getInventory().getRarityBuckets( packCard.definition.rarity ), random );
+    if( boxCard != null ) {
+      draft.swapCards( pack, packCard, boxCard );
+    }
+  }
+
+  private Card selectReplacement( Draft draft, Card original, int column, int dir, Random random ) {
+    Inventory inventory = draft.getInventory();
+    Pool pool = draft.getPool();
+    int bucket = inventory.getBucket( inventory.indexOf( original ) );
+    Card replacement = null;
+
+    // Iterate while relaxing criteria until we find one.
+    if( dir != 0 ) {
+      replacement = pool.draw( bucket, column, original.getValue( column ), dir, random );
+    }
 
-    replacements = stack.getCardList( and( equal( Card.RARITY, original.rarity ), equal( Card.TYPE, original.type ) ) );
-    replacement = selectReplacement( replacements, original, dir, random );
+    if( replacement == null ) {
+      replacement = pool.draw( bucket, random );
+    }
 
     if( replacement == null ) {
-      replacements = stack.getCardList( equal( Card.RARITY, original.rarity ) );
-      replacement = selectReplacement( replacements, original, dir, random );
+      replacement = pool.draw( inventory.getRarityBuckets( original.definition.rarity ), random );
     }
 
     if( replacement == null ) {
-      System.out.println( "No replacement for " + original );
+      misses.incrementAndGet();
       replacement = original;
     }
 
@@ -0,0 +1,40 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.minder.cuber;
+
+import org.uncommons.watchmaker.framework.PopulationData;
+import org.uncommons.watchmaker.framework.TerminationCondition;
+
+/**
+ * Terminates once the evaluator has scored a number of candidates in total, which can span several runs.
+ */
+public class EvaluationLimit implements TerminationCondition {
+
+  private DraftEvaluator evaluator;
+  private long limit;
+
+  public EvaluationLimit( DraftEvaluator evaluator, long limit ) {
+    this.evaluator = evaluator;
+    this.limit = limit;
+  }
+
+  public boolean shouldTerminate( PopulationData<?> populationData ) {
+    return evaluator.getEvaluations() >= limit;
+  }
+
+}
@@ -0,0 +1,180 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.minder.cuber;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * The immutable set of cards a draft is dealt from, shared by every candidate.
+ * Cards are addressed by their index within the inventory so a draft can record where each card is as an int[].
+ * Cards are also grouped into buckets by rarity and type, and within each bucket ordered by every catalog column,
+ * so a draft's pool can draw replacements without querying.
+ */
+public class Inventory {
+
+  private String name;
+  private Catalog catalog;
+  private Card[] cards;
+  private int[] indexes;
+  private boolean[] integral;
+
+  private int typeCount;
+  private int[] buckets;
+  private int[][] members;
+  private int[][][] ordered;
+
+  /**
+   * Creates the inventory of cards that must all come from the catalog, which must have finished loading.
+   */
+  public Inventory( String name, Catalog catalog, Collection<Card> cards ) {
+    if( !catalog.isFinished() ) {
+      throw new IllegalStateException( String.format( "Catalog of inventory %s is still loading.", name ) );
+    }
+    this.name = name;
+    this.catalog = catalog;
+    this.cards = cards.toArray( new Card[ cards.size() ] );
+    this.indexes = new int[ catalog.getCopyCount() ];
+    Arrays.fill( this.indexes, -1 );
+    for( int i=0; i<this.cards.length; i++ ) {
+      if( this.cards[ i ].catalog != catalog ) {
+        throw new IllegalStateException( String.format(
+            "Card %s of inventory %s is from another catalog.", this.cards[ i ].id, name ) );
+      }
+      this.indexes[ this.cards[ i ].serial ] = i;
+    }
+
+    this.integral = new boolean[ Catalog.COLUMN_COUNT ];
+    Arrays.fill( this.integral, true );
+    for( int c=0; c<Catalog.COLUMN_COUNT; c++ ) {
+      for( int i=0; i<this.cards.length && integral[ c ]; i++ ) {
+        double v = this.cards[ i ].getValue( c );
+        integral[ c ] = v == Math.rint( v );
+      }
+    }
+
+    this.typeCount = catalog.getTypeCount();
+    int bucketCount = catalog.getRarityCount() * typeCount;
+    this.buckets = new int[ this.cards.length ];
+    int[] sizes = new int[ bucketCount ];
+    for( int i=0; i<this.cards.length; i++ ) {
+      int o = this.cards[ i ].ordinal;
+      buckets[ i ] = catalog.getRarity( o ) * typeCount + catalog.getType( o );
+      sizes[ buckets[ i ] ]++;
+    }
+    this.members = new int[ bucketCount ][];
+    for( int b=0; b<bucketCount; b++ ) {
+      members[ b ] = new int[ sizes[ b ] ];
+      sizes[ b ] = 0;
+    }
+    for( int i=0; i<this.cards.length; i++ ) {
+      members[ buckets[ i ] ][ sizes[ buckets[ i ] ]++ ] = i;
+    }
+
+    this.ordered = new int[ Catalog.COLUMN_COUNT ][ bucketCount ][];
+    for( int c=0; c<Catalog.COLUMN_COUNT; c++ ) {
+      for( int b=0; b<bucketCount; b++ ) {
+        ordered[ c ][ b ] = order( members[ b ], c );
+      }
+    }
+  }
+
+  public Inventory( Box box ) {
+    this( box.getName(), box.getCatalog(), box.getCards() );
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public Catalog getCatalog() {
+    return catalog;
+  }
+
+  public int getSize() {
+    return cards.length;
+  }
+
+  public Card getCard( int index ) {
+    return cards[ index ];
+  }
+
+  public int indexOf( Card card ) {
+    int s = card.serial;
+    return card.catalog == catalog && s < indexes.length ? indexes[ s ] : -1;
+  }
+
+  /**
+   * Returns true if the column has a whole value for every card in the inventory.
+   */
+  public boolean isIntegral( int column ) {
+    return integral[ column ];
+  }
+
+  public int getBucketCount() {
+    return members.length;
+  }
+
+  public int getBucket( int index ) {
+    return buckets[ index ];
+  }
+
+  public int getBucketSize( int bucket ) {
+    return members[ bucket ].length;
+  }
+
+  public int[] getRarityBuckets( String rarity ) {
+    int r = catalog.getRarityCode( rarity );
+    int[] array;
+    if( r < 0 ) {
+      array = new int[ 0 ];
+    } else {
+      array = new int[ typeCount ];
+      for( int t=0; t<typeCount; t++ ) {
+        array[ t ] = r * typeCount + t;
+      }
+    }
+    return array;
+  }
+
+  /**
+   * Returns every inventory index in the bucket in ascending order of the column's value.
+   */
+  public int[] getOrdered( int bucket, int column ) {
+    return ordered[ column ][ bucket ];
+  }
+
+  private int[] order( int[] bucket, final int column ) {
+    Integer[] boxed = new Integer[ bucket.length ];
+    for( int i=0; i<bucket.length; i++ ) {
+      boxed[ i ] = bucket[ i ];
+    }
+    Arrays.sort( boxed, new Comparator<Integer>() {
+      public int compare( Integer left, Integer right ) {
+        return Double.compare( cards[ left ].getValue( column ), cards[ right ].getValue( column ) );
+      }
+    } );
+    int[] array = new int[ boxed.length ];
+    for( int i=0; i<array.length; i++ ) {
+      array[ i ] = boxed[ i ];
+    }
+    return array;
+  }
+
+}
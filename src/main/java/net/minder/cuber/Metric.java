@@ -18,12 +18,14 @@
 package net.minder.cuber;
 
 import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
+import org.apache.commons.math3.stat.descriptive.StatisticalSummaryValues;
 import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.TreeMap;
 
 public class Metric {
 
@@ -34,14 +36,39 @@ public class Metric {
   private static final Double ONE = Double.valueOf( one );
 
   private String name;
+  private int column;
   private Map<String,Double> data;
   private SummaryStatistics stats;
 
+  // Running statistics, only maintained when the metric is created in running mode.
+  private boolean running;
+  private long count;
+  private double sum;
+  private double sumSq;
+  private TreeMap<Double,Integer> values;
+
 
   public Metric( String name ) {
+    this( name, Catalog.getColumn( name ) );
+  }
+
+  public Metric( String name, int column ) {
+    this( name, column, false );
+  }
+
+  /**
+   * A running metric keeps count, sum, sum of squares, min and max current on every add and del
+   * so reading the statistics never has to walk the data.
+   */
+  public Metric( String name, int column, boolean running ) {
     this.name = name;
+    this.column = column;
     this.data = new LinkedHashMap<String, Double>( 24 );
     this.stats = null;
+    this.running = running;
+    if( running ) {
+      this.values = new TreeMap<Double,Integer>();
+    }
   }
 
   public void add( String id, double value ) {
@@ -50,14 +77,46 @@ public class Metric {
       del( id );
     }
     data.put( id, d );
+    if( running ) {
+      count++;
+      sum += value;
+      sumSq += value * value;
+      Integer n = values.get( d );
+      values.put( d, n == null ? 1 : n + 1 );
+    }
     stats = null;
   }
 
+  public void add( Card card ) {
+    add( card.id, card.getValue( column ) );
+  }
+
   public void del( String id ) {
-    data.remove( id );
+    Double d = data.remove( id );
+    if( running && d != null ) {
+      double value = d.doubleValue();
+      count--;
+      if( count == 0 ) {
+        sum = 0.0D;
+        sumSq = 0.0D;
+      } else {
+        sum -= value;
+        sumSq -= value * value;
+      }
+      Integer n = values.get( d );
+      if( n == 1 ) {
+        values.remove( d );
+      } else {
+        values.put( d, n - 1 );
+      }
+    }
     stats = null;
   }
 
+  public void del( Card card ) {
+    del( card.id );
+  }
+
   public Map<String,Double> getData() {
     return data;
   }
@@ -66,27 +125,50 @@ public class Metric {
     return name;
   }
 
+  public int getColumn() {
+    return column;
+  }
+
+  public boolean isRunning() {
+    return running;
+  }
+
   public double getMin() {
+    if( running ) {
+      return count == 0 ? Double.NaN : values.firstKey().doubleValue();
+    }
     return getStats().getMin();
   }
 
   public double getMax() {
+    if( running ) {
+      return count == 0 ? Double.NaN : values.lastKey().doubleValue();
+    }
     return getStats().getMax();
   }
 
   public double getSum() {
+    if( running ) {
+      return sum;
+    }
     return getStats().getSum();
   }
 
   public Double getAvg() {
+    if( running ) {
+      return count == 0 ? Double.NaN : sum / count;
+    }
     return getStats().getMean();
   }
 
   public double getStd() {
-    return getStats().getStandardDeviation();
+    return Math.sqrt( getVar() );
   }
 
   public double getVar() {
+    if( running ) {
+      return getRunningVar();
+    }
     return getStats().getVariance();
   }
 
@@ -99,6 +181,9 @@ public class Metric {
   }
 
   public StatisticalSummary getStats() {
+    if( running ) {
+      return new StatisticalSummaryValues( getAvg(), getRunningVar(), count, getMax(), getMin(), sum );
+    }
     if( stats == null ) {
       SummaryStatistics s = new SummaryStatistics();
       for( Double d: data.values() ) {
@@ -109,4 +194,20 @@ public class Metric {
     return stats;
   }
 
+  // Bias corrected like SummaryStatistics.getVariance().
+  private double getRunningVar() {
+    double var;
+    if( count == 0 ) {
+      var = Double.NaN;
+    } else if( count == 1 ) {
+      var = 0.0D;
+    } else {
+      var = ( sumSq - ( sum * sum / count ) ) / ( count - 1 );
+      if( var < 0.0D ) {
+        var = 0.0D;
+      }
+    }
+    return var;
+  }
+
 }
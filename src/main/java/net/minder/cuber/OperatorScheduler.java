@@ -0,0 +1,133 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.minder.cuber;
+
+import java.util.Random;
+
+/**
+ * Multi-armed bandit that picks between operators by how much they improve fitness per unit of time.
+ * Each operator's credit is a recency weighted average of its improvement per nanosecond and operators are picked
+ * in proportion to their credit, with a floor so that none is starved and each can recover as the search moves on.
+ * A scheduler is not thread safe.  Parallel workers each {@link #fork} their own for a generation and the forks
+ * are merged back in stream order once the generation is done, so no thread sees another's rewards mid-generation.
+ */
+public class OperatorScheduler {
+
+  // The weight given to each new reward in an operator's credit.
+  private static final double DECAY = 0.05d;
+  // The least probability any operator is picked with.
+  private static final double FLOOR = 0.05d;
+  // Each operator is tried this many times before credit is used.
+  private static final int WARMUP = 10;
+
+  private String[] names;
+  private double[] credits;
+  private long[] counts;
+
+  public OperatorScheduler( String... names ) {
+    this.names = names;
+    this.credits = new double[ names.length ];
+    this.counts = new long[ names.length ];
+  }
+
+  /**
+   * Returns a copy with the same credit and counts for one worker stream to use during a generation.
+   */
+  public OperatorScheduler fork() {
+    OperatorScheduler fork = new OperatorScheduler( names );
+    System.arraycopy( credits, 0, fork.credits, 0, credits.length );
+    System.arraycopy( counts, 0, fork.counts, 0, counts.length );
+    return fork;
+  }
+
+  /**
+   * Folds the rewards the forks received back into this scheduler.  Each operator's credit becomes the average of
+   * the forks' credits weighted by how many rewards each fork gave it, and is kept when no fork used it.
+   */
+  public void merge( OperatorScheduler... forks ) {
+    for( int i=0; i<names.length; i++ ) {
+      long added = 0;
+      double sum = 0.0d;
+      for( OperatorScheduler fork: forks ) {
+        long n = fork.counts[ i ] - counts[ i ];
+        added += n;
+        sum += n * fork.credits[ i ];
+      }
+      if( added > 0 ) {
+        credits[ i ] = sum / added;
+        counts[ i ] += added;
+      }
+    }
+  }
+
+  public int select( Random random ) {
+    int n = names.length;
+    for( int i=0; i<n; i++ ) {
+      if( counts[ i ] < WARMUP ) {
+        return i;
+      }
+    }
+    double total = 0.0d;
+    for( int i=0; i<n; i++ ) {
+      total += credits[ i ];
+    }
+    if( total <= 0.0d ) {
+      return random.nextInt( n );
+    }
+    double u = random.nextDouble();
+    double floor = Math.min( FLOOR, 1.0d / n );
+    for( int i=0; i<n-1; i++ ) {
+      u -= floor + ( 1.0d - n * floor ) * credits[ i ] / total;
+      if( u < 0.0d ) {
+        return i;
+      }
+    }
+    return n - 1;
+  }
+
+  /**
+   * Credits the operator with the fitness improvement it made in the time it took.  Worse results count as none.
+   */
+  public void reward( int operator, double improvement, long nanos ) {
+    double r = improvement > 0.0d ? improvement / Math.max( 1L, nanos ) : 0.0d;
+    credits[ operator ] += ( counts[ operator ] == 0 ? 1.0d : DECAY ) * ( r - credits[ operator ] );
+    counts[ operator ]++;
+  }
+
+  public double getProbability( int operator ) {
+    int n = names.length;
+    double total = 0.0d;
+    for( int i=0; i<n; i++ ) {
+      total += credits[ i ];
+    }
+    double floor = Math.min( FLOOR, 1.0d / n );
+    return total <= 0.0d ? 1.0d / n : floor + ( 1.0d - n * floor ) * credits[ operator ] / total;
+  }
+
+  public String toString() {
+    StringBuilder s = new StringBuilder();
+    for( int i=0; i<names.length; i++ ) {
+      if( i > 0 ) {
+        s.append( ", " );
+      }
+      s.append( String.format( "%s=%.2f(%d)", names[ i ], getProbability( i ), counts[ i ] ) );
+    }
+    return s.toString();
+  }
+
+}
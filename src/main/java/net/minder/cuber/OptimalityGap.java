@@ -0,0 +1,53 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.minder.cuber;
+
+import org.uncommons.watchmaker.framework.PopulationData;
+import org.uncommons.watchmaker.framework.TerminationCondition;
+
+/**
+ * Terminates once the best draft is within epsilon of the lower bound on any rearrangement of its dealt cards.
+ * That bound does not cover deals that take cards from the pool, so reaching it only shows no better split of
+ * the same cards exists, not that the draft is optimal unless the pool is empty.
+ */
+public class OptimalityGap implements TerminationCondition {
+
+  // Allows for rounding in the incrementally maintained aggregate.
+  private static final double TOLERANCE = 1.0e-9d;
+
+  private double epsilon;
+
+  public OptimalityGap( double epsilon ) {
+    this.epsilon = epsilon;
+  }
+
+  public static double getGap( Draft draft ) {
+    DraftFitness fitness = draft.getFitness();
+    return fitness == null ? Double.NaN : fitness.getAggregate() - fitness.getLowerBound();
+  }
+
+  public boolean isReached( Draft draft ) {
+    return getGap( draft ) <= epsilon + TOLERANCE;
+  }
+
+  public boolean shouldTerminate( PopulationData<?> populationData ) {
+    Object best = populationData.getBestCandidate();
+    return best instanceof Draft && isReached( (Draft)best );
+  }
+
+}
@@ -17,28 +17,204 @@
  */
 package net.minder.cuber;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
-import java.util.Map;
+import java.util.List;
+import java.util.Random;
 
-public class Pack extends Stack {
+/**
+ * A pack is only a handful of cards so it is kept in a small array with a running sum per catalog column.
+ * Lookups are linear scans which for packs are cheaper than maintaining indexes.
+ */
+public class Pack {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private String name;
+  private int index;
+  private Card[] cards;
+  private int count;
+  private double[] sums;
+  private long hash;
+
+  /**
+   * Creates an empty pack.  The index is the position of the pack in its draft.
+   */
+  public Pack( String name, int index ) {
+    this.name = name;
+    this.index = index;
+    this.cards = new Card[ INITIAL_CAPACITY ];
+    this.count = 0;
+    this.sums = new double[ Catalog.COLUMN_COUNT ];
+  }
+
+  /**
+   * Creates an independent pack with the same name, index and cards.
+   */
+  public Pack copy() {
+    Pack pack = new Pack( name, index );
+    pack.cards = Arrays.copyOf( cards, cards.length );
+    pack.count = count;
+    pack.sums = Arrays.copyOf( sums, sums.length );
+    pack.hash = hash;
+    return pack;
+  }
+
+  /**
+   * Overwrites the cards of this pack with those of another pack, leaving the other pack as it is.
+   */
+  public void copyFrom( Pack pack ) {
+    if( cards.length < pack.count ) {
+      cards = new Card[ pack.cards.length ];
+    }
+    System.arraycopy( pack.cards, 0, cards, 0, pack.count );
+    Arrays.fill( cards, pack.count, count > pack.count ? count : pack.count, null );
+    count = pack.count;
+    System.arraycopy( pack.sums, 0, sums, 0, sums.length );
+    hash = pack.hash;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getIndex() {
+    return index;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  public Card getCard( int index ) {
+    return cards[ index ];
+  }
+
+  public Collection<Card> getCards() {
+    return getCardList();
+  }
+
+  public List<Card> getCardList() {
+    return Arrays.asList( Arrays.copyOf( cards, count ) );
+  }
+
+  public void addCard( Card card ) {
+    if( count == cards.length ) {
+      cards = Arrays.copyOf( cards, count * 2 );
+    }
+    cards[ count++ ] = card;
+    hash += card.catalog.getKey( card.ordinal );
+    for( int c=0; c<Catalog.COLUMN_COUNT; c++ ) {
+      sums[ c ] += card.getValue( c );
+    }
+  }
+
+  public void addCards( Iterable<Card> cards ) {
+    for( Card card: cards ) {
+      addCard( card );
+    }
+  }
+
+  public void delCard( Card card ) {
+    int i = indexOf( card );
+    if( i >= 0 ) {
+      cards[ i ] = cards[ --count ];
+      cards[ count ] = null;
+      hash -= card.catalog.getKey( card.ordinal );
+      for( int c=0; c<Catalog.COLUMN_COUNT; c++ ) {
+        sums[ c ] -= card.getValue( c );
+      }
+    }
+  }
+
+  public Card getRandomCard( Random random ) {
+    if( count == 0 ) {
+      throw new IllegalStateException( String.format( "Pack %s is empty.", getName() ) );
+    }
+    return cards[ random.nextInt( count ) ];
+  }
+
+  /**
+   * The sum of the keys of the cards in the pack.  Unlike xor, a sum keeps duplicate cards from cancelling out.
+   */
+  public long getHash() {
+    return hash;
+  }
+
+  public double getSum( int column ) {
+    return sums[ column ];
+  }
+
+  public double getAvg( int column ) {
+    return count == 0 ? Double.NaN : sums[ column ] / count;
+  }
 
-  public Pack( String name ) {
-    super( name );
+  public double getMax( int column ) {
+    double max = Double.NaN;
+    for( int i=0; i<count; i++ ) {
+      double v = cards[ i ].getValue( column );
+      if( i == 0 || v > max ) {
+        max = v;
+      }
+    }
+    return max;
+  }
+
+  /**
+   * Returns the card with the highest value in the column among those at or above the bound, when above is true,
+   * or at or below the bound otherwise.  Returns null if no card qualifies.
+   */
+  public Card getMaxCard( int column, double bound, boolean above ) {
+    Card card = null;
+    double max = 0.0d;
+    for( int i=0; i<count; i++ ) {
+      double v = cards[ i ].getValue( column );
+      if( above ? v >= bound : v <= bound ) {
+        if( card == null || v > max ) {
+          card = cards[ i ];
+          max = v;
+        }
+      }
+    }
+    return card;
+  }
+
+  public int getDuplication() {
+    int d = 0;
+    for( int i=1; i<count; i++ ) {
+      String cid = cards[ i ].definition.cid;
+      for( int j=0; j<i; j++ ) {
+        if( cid.equals( cards[ j ].definition.cid ) ) {
+          d++;
+          break;
+        }
+      }
+    }
+    return d;
+  }
+
+  private int indexOf( Card card ) {
+    for( int i=0; i<count; i++ ) {
+      if( cards[ i ].equals( card ) ) {
+        return i;
+      }
+    }
+    return -1;
   }
 
   public String toString() {
     //String ids = StringUtils.join( Utils.column( 0, query( String.format( "select setId from %s order by setId", Card.class.getName() ) ) ), "," );
-    Map<String,Metric> metrics = getMetrics();
     return String.format(
         "Pack[%s]: T=%2d, C=%.0f, U=%.0f, R=%.0f, c=%2.0f, i=%.0f, e=%.0f, s=%.0f, a=%.0f, l=%.0f, M=%.0f/%.0f/%1.1f (%2.0f/%2.0f/%2.0f/%2.0f/%2.0f) S=%2.0f/%2.0f/%1.1f(%2.0f/%2.0f), W=%3.0f",
         getName(), getCount(),
-        metrics.get(COMMON).getSum(), metrics.get(UNCOMMON).getSum(), metrics.get(RARE).getSum(),
-        metrics.get(CREATURE).getSum(), metrics.get(INSTANT).getSum(), metrics.get(ENCHANTMENT).getSum(), metrics.get(SORCERY).getSum(), metrics.get(ARTIFACT).getSum(), metrics.get(LAND).getSum(),
-        metrics.get(COST).getSum(), metrics.get(COST).getMax(), metrics.get(COST).getAvg(),
-        metrics.get(WHITE).getSum(), metrics.get(BLUE).getSum(), metrics.get(BLACK).getSum(), metrics.get(RED).getSum(), metrics.get(GREEN).getSum(),
-        metrics.get(STRENGTH).getSum(), metrics.get(STRENGTH).getMax(), metrics.get(STRENGTH).getAvg(),
-        metrics.get(OFFENSE).getSum(), metrics.get(DEFENSE).getSum(),
-        metrics.get(WEIGHT).getSum() );
+        getSum(Catalog.COMMON), getSum(Catalog.UNCOMMON), getSum(Catalog.RARE),
+        getSum(Catalog.CREATURE), getSum(Catalog.INSTANT), getSum(Catalog.ENCHANTMENT), getSum(Catalog.SORCERY), getSum(Catalog.ARTIFACT), getSum(Catalog.LAND),
+        getSum(Catalog.COST), getMax(Catalog.COST), getAvg(Catalog.COST),
+        getSum(Catalog.WHITE), getSum(Catalog.BLUE), getSum(Catalog.BLACK), getSum(Catalog.RED), getSum(Catalog.GREEN),
+        getSum(Catalog.STRENGTH), getMax(Catalog.STRENGTH), getAvg(Catalog.STRENGTH),
+        getSum(Catalog.OFFENSE), getSum(Catalog.DEFENSE),
+        getSum(Catalog.WEIGHT) );
         //ids );
   }
 
@@ -52,7 +228,7 @@ public class Pack extends Stack {
   public static Comparator<Pack> WEIGHT_COMPARATOR = new WeightComparator();
   public static class WeightComparator implements Comparator<Pack> {
     public int compare( Pack left, Pack right ) {
-      return Double.compare( right.getMetrics().get( WEIGHT ).getSum(), left.getMetrics().get( WEIGHT ).getSum() );
+      return Double.compare( right.getSum( Catalog.WEIGHT ), left.getSum( Catalog.WEIGHT ) );
     }
   }
 
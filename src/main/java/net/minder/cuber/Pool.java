@@ -0,0 +1,210 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.minder.cuber;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The inventory cards of a draft that have not been dealt into a pack.
+ * Cards are held in one array per rarity and type bucket, plus one array for the whole pool, each with a position
+ * map so that adding, removing and drawing a random card are all constant time.
+ * The arrays are shared copy-on-write in chunks so a copy only pays for the parts of the pool it changes.
+ */
+public class Pool {
+
+  private static final int RANGE_ATTEMPTS = 8;
+
+  private Inventory inventory;
+  private SharedIntArray[] members;
+  private int[] sizes;
+  private SharedIntArray positions;
+  private SharedIntArray all;
+  private int size;
+  private SharedIntArray allPositions;
+
+  public Pool( Inventory inventory ) {
+    int n = inventory.getSize();
+    this.inventory = inventory;
+    this.members = new SharedIntArray[ inventory.getBucketCount() ];
+    this.sizes = new int[ members.length ];
+    for( int b=0; b<members.length; b++ ) {
+      members[ b ] = new SharedIntArray( inventory.getBucketSize( b ), 0 );
+    }
+    this.positions = new SharedIntArray( n, -1 );
+    this.all = new SharedIntArray( n, 0 );
+    this.allPositions = new SharedIntArray( n, -1 );
+    for( int i=0; i<n; i++ ) {
+      add( i );
+    }
+  }
+
+  private Pool( Pool pool ) {
+    this.inventory = pool.inventory;
+    this.members = new SharedIntArray[ pool.members.length ];
+    for( int b=0; b<members.length; b++ ) {
+      members[ b ] = pool.members[ b ].copy();
+    }
+    this.sizes = pool.sizes.clone();
+    this.positions = pool.positions.copy();
+    this.all = pool.all.copy();
+    this.allPositions = pool.allPositions.copy();
+    this.size = pool.size;
+  }
+
+  /**
+   * Creates a copy of this pool that can be changed without affecting the original.
+   * The two pools must not be used by different threads until one of them has been changed.
+   */
+  public Pool copy() {
+    return new Pool( this );
+  }
+
+  /**
+   * Overwrites this pool with the contents of another pool of the same inventory, leaving the other pool as it is.
+   */
+  public void copyFrom( Pool pool ) {
+    for( int b=0; b<members.length; b++ ) {
+      members[ b ].copyFrom( pool.members[ b ] );
+    }
+    System.arraycopy( pool.sizes, 0, sizes, 0, sizes.length );
+    positions.copyFrom( pool.positions );
+    all.copyFrom( pool.all );
+    allPositions.copyFrom( pool.allPositions );
+    size = pool.size;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public boolean contains( int index ) {
+    return allPositions.get( index ) >= 0;
+  }
+
+  public void add( int index ) {
+    if( allPositions.get( index ) < 0 ) {
+      int b = inventory.getBucket( index );
+      positions.set( index, sizes[ b ] );
+      members[ b ].set( sizes[ b ]++, index );
+      allPositions.set( index, size );
+      all.set( size++, index );
+    }
+  }
+
+  public void remove( int index ) {
+    int p = allPositions.get( index );
+    if( p >= 0 ) {
+      int b = inventory.getBucket( index );
+      SharedIntArray bucket = members[ b ];
+      int position = positions.get( index );
+      int last = bucket.get( --sizes[ b ] );
+      bucket.set( position, last );
+      positions.set( last, position );
+      positions.set( index, -1 );
+      last = all.get( --size );
+      all.set( p, last );
+      allPositions.set( last, p );
+      allPositions.set( index, -1 );
+    }
+  }
+
+  public Card draw( Random random ) {
+    return size == 0 ? null : inventory.getCard( all.get( random.nextInt( size ) ) );
+  }
+
+  public Card draw( int bucket, Random random ) {
+    int s = sizes[ bucket ];
+    return s == 0 ? null : inventory.getCard( members[ bucket ].get( random.nextInt( s ) ) );
+  }
+
+  /**
+   * Draws a random card from any of the buckets, weighted by how many pool cards each holds.
+   */
+  public Card draw( int[] buckets, Random random ) {
+    int total = 0;
+    for( int b: buckets ) {
+      total += sizes[ b ];
+    }
+    Card card = null;
+    if( total > 0 ) {
+      int k = random.nextInt( total );
+      for( int b: buckets ) {
+        if( k < sizes[ b ] ) {
+          card = inventory.getCard( members[ b ].get( k ) );
+          break;
+        }
+        k -= sizes[ b ];
+      }
+    }
+    return card;
+  }
+
+  /**
+   * Draws a random card from the bucket whose column value is strictly below the given value when dir is negative,
+   * or strictly above it when dir is positive.  Returns null if the pool holds no such card.
+   */
+  public Card draw( int bucket, int column, double value, int dir, Random random ) {
+    int[] ordered = inventory.getOrdered( bucket, column );
+    int from;
+    int to;
+    if( dir < 0 ) {
+      from = 0;
+      to = bound( ordered, column, value, false );
+    } else {
+      from = bound( ordered, column, value, true );
+      to = ordered.length;
+    }
+    int range = to - from;
+    if( range <= 0 ) {
+      return null;
+    }
+    // Most of the inventory is normally in the pool so a few random probes almost always hit.
+    for( int i=0; i<RANGE_ATTEMPTS; i++ ) {
+      int index = ordered[ from + random.nextInt( range ) ];
+      if( contains( index ) ) {
+        return inventory.getCard( index );
+      }
+    }
+    List<Integer> hits = new ArrayList<Integer>();
+    for( int i=from; i<to; i++ ) {
+      if( contains( ordered[ i ] ) ) {
+        hits.add( ordered[ i ] );
+      }
+    }
+    return hits.isEmpty() ? null : inventory.getCard( hits.get( random.nextInt( hits.size() ) ) );
+  }
+
+  // First position whose value is greater than value when after is true, otherwise first position not less than it.
+  private int bound( int[] ordered, int column, double value, boolean after ) {
+    int lo = 0;
+    int hi = ordered.length;
+    while( lo < hi ) {
+      int mid = ( lo + hi ) >>> 1;
+      double v = inventory.getCard( ordered[ mid ] ).getValue( column );
+      if( after ? v <= value : v < value ) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+}
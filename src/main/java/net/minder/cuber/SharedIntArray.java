@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.minder.cuber;
+
+import java.util.Arrays;
+
+/**
+ * An int array split into small chunks that copies share until one of them writes to a chunk.
+ * Copying costs one reference per chunk and the first write to a shared chunk copies only that chunk.
+ */
+class SharedIntArray {
+
+  private static final int SHIFT = 6;
+  private static final int CHUNK = 1 << SHIFT;
+  private static final int MASK = CHUNK - 1;
+
+  private int length;
+  private int[][] chunks;
+  private boolean[] owned;
+
+  SharedIntArray( int length, int value ) {
+    this.length = length;
+    this.chunks = new int[ ( length + MASK ) >>> SHIFT ][];
+    this.owned = new boolean[ chunks.length ];
+    for( int c=0; c<chunks.length; c++ ) {
+      chunks[ c ] = new int[ CHUNK ];
+      Arrays.fill( chunks[ c ], value );
+      owned[ c ] = true;
+    }
+  }
+
+  private SharedIntArray( SharedIntArray array ) {
+    this.length = array.length;
+    this.chunks = array.chunks.clone();
+    this.owned = new boolean[ chunks.length ];
+    // The original now shares every chunk too so it must also copy before it writes.
+    Arrays.fill( array.owned, false );
+  }
+
+  /**
+   * Creates a copy that shares all chunks with this array.
+   * The two arrays must not be used by different threads until one of them has been written.
+   */
+  SharedIntArray copy() {
+    return new SharedIntArray( this );
+  }
+
+  /**
+   * Overwrites this array with the values of another of the same length, reusing the chunks this array owns.
+   * The other array is left as it is.
+   */
+  void copyFrom( SharedIntArray array ) {
+    for( int c=0; c<chunks.length; c++ ) {
+      if( owned[ c ] ) {
+        System.arraycopy( array.chunks[ c ], 0, chunks[ c ], 0, CHUNK );
+      } else {
+        chunks[ c ] = array.chunks[ c ].clone();
+        owned[ c ] = true;
+      }
+    }
+  }
+
+  int length() {
+    return length;
+  }
+
+  int get( int index ) {
+    return chunks[ index >>> SHIFT ][ index & MASK ];
+  }
+
+  void set( int index, int value ) {
+    int c = index >>> SHIFT;
+    if( !owned[ c ] ) {
+      chunks[ c ] = chunks[ c ].clone();
+      owned[ c ] = true;
+    }
+    chunks[ c ][ index & MASK ] = value;
+  }
+
+}
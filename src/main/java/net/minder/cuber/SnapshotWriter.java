@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.minder.cuber;
+
+import org.uncommons.watchmaker.framework.PopulationData;
+import org.uncommons.watchmaker.framework.islands.IslandEvolutionObserver;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Keeps the best draft seen so far written to a file so a run can be stopped at any time without losing it.
+ * The file is replaced atomically so readers only ever see a complete snapshot.  Snapshots are written on every
+ * improvement or, with an interval, at most once per interval.
+ */
+public class SnapshotWriter implements IslandEvolutionObserver<Draft> {
+
+  private File file;
+  private long interval;
+  private double bestFitness;
+  private Draft best;
+  private boolean dirty;
+  private long written;
+
+  public SnapshotWriter( File file, long interval ) {
+    this.file = file;
+    this.interval = interval;
+    this.bestFitness = Double.MAX_VALUE;
+    this.best = null;
+    this.dirty = false;
+    this.written = 0L;
+  }
+
+  public void populationUpdate( PopulationData<? extends Draft> data ) {
+    update( data.getBestCandidate() );
+  }
+
+  public void islandPopulationUpdate( int islandIndex, PopulationData<? extends Draft> data ) {
+  }
+
+  /**
+   * Offers a draft, which is kept if it is the best so far.  The draft is copied so it may go on changing.
+   * Drafts of the same inventory are copied into the one kept so the offered draft keeps its own storage.
+   */
+  public synchronized void update( Draft draft ) {
+    DraftFitness fitness = draft.getFitness();
+    if( fitness != null && fitness.getAggregate() < bestFitness ) {
+      bestFitness = fitness.getAggregate();
+      if( best != null && best.getInventory() == draft.getInventory() ) {
+        best.copyFrom( draft );
+      } else {
+        best = draft.copy();
+      }
+      dirty = true;
+    }
+    if( dirty && System.currentTimeMillis() - written >= interval ) {
+      flush();
+    }
+  }
+
+  /**
+   * Writes the best draft if it has changed since it was last written.
+   */
+  public synchronized void flush() {
+    if( !dirty ) {
+      return;
+    }
+    File temp = new File( file.getPath() + ".tmp" );
+    try {
+      Writer writer = new OutputStreamWriter( new FileOutputStream( temp ), StandardCharsets.UTF_8 );
+      try {
+        writer.write( best.toDescription() );
+        writer.write( "PICKLIST" );
+        writer.write( System.lineSeparator() );
+        writer.write( best.toPickList() );
+      } finally {
+        writer.close();
+      }
+      Files.move( temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+    } catch( IOException e ) {
+      throw new IllegalStateException( String.format( "Failed to write snapshot %s.", file ), e );
+    }
+    dirty = false;
+    written = System.currentTimeMillis();
+  }
+
+}
@@ -81,6 +81,10 @@ public class Stack {
   private IndexedCollection<Card> cards;
   private MultiValuedMap<String,String> dups;
   private Map<String,Metric> metrics;
+  private Metric[] columns;
+  // Random access membership: the cards in an array plus each card's position, deletes swap in the last card.
+  private ArrayList<Card> members;
+  private Map<String,Integer> positions;
 
 
   public Stack( String name ) {
@@ -107,9 +111,14 @@ public class Stack {
     this.cards.addIndex( NavigableIndex.onAttribute( Card.STRENGTH ));
     this.cards.addIndex( NavigableIndex.onAttribute( Card.SOURCE ));
     this.dups = new ArrayListValuedHashMap<String,String>();
+    this.members = new ArrayList<Card>();
+    this.positions = new HashMap<String,Integer>();
     this.metrics = new HashMap<String,Metric>( 19 );
-    for( String metric: METRICS ) {
-      this.metrics.put( metric, new Metric( metric ) );
+    this.columns = new Metric[ Catalog.COLUMN_COUNT ];
+    for( int i=0; i<Catalog.COLUMN_COUNT; i++ ) {
+      Metric metric = new Metric( Catalog.COLUMN_NAMES[ i ], i, true );
+      this.metrics.put( metric.getName(), metric );
+      this.columns[ i ] = metric;
     }
   }
 
@@ -126,7 +135,7 @@ public class Stack {
   }
 
   public List<Card> getCardList() {
-    return new ArrayList<Card>( cards );
+    return new ArrayList<Card>( members );
   }
 
   public Card getCard( Query query ) {
@@ -158,12 +167,11 @@ public class Stack {
   }
 
   public Card getRandomCard( Random random ) {
-    if( cards.isEmpty() ) {
+    if( members.isEmpty() ) {
       throw new IllegalStateException( String.format( "Stack %s is empty.", getName() ) );
     }
-    List<Card> list = getCardList();
-    int i = random.nextInt( list.size() );
-    Card card = list.get( i );
+    int i = random.nextInt( members.size() );
+    Card card = members.get( i );
     return card;
   }
 
@@ -192,30 +200,18 @@ public class Stack {
   }
 
   public void addCard( Card card ) {
-    String id = card.id;
     cards.add( card );
-    dups.put( card.cid, id );
-    metrics.get( MULTI ).add( id, card.getAnyMana() );
-    metrics.get( WHITE ).add( id, card.getWhiteMana() );
-    metrics.get( BLUE ).add( id, card.getBlueMana() );
-    metrics.get( BLACK ).add( id, card.getBlackMana() );
-    metrics.get( RED ).add( id, card.getRedMana() );
-    metrics.get( GREEN ).add( id, card.getGreenMana() );
-    metrics.get( COST ).add( id, card.getTotalMana() );
-    metrics.get( OFFENSE ).add( id, card.getOffensiveStrength() );
-    metrics.get( DEFENSE ).add( id, card.getDefensiveStrength() );
-    metrics.get( STRENGTH ).add( id, card.getTotalStrength() );
-    metrics.get( CREATURE ).add( id, card.getCreature() );
-    metrics.get( SORCERY ).add( id, card.getSourcery() );
-    metrics.get( ENCHANTMENT ).add( id, card.getEnchantment() );
-    metrics.get( INSTANT ).add( id, card.getInstant() );
-    metrics.get( ARTIFACT ).add( id, card.getArtifact() );
-    metrics.get( LAND ).add( id, card.getLand() );
-    metrics.get( COMMON ).add( id, card.getCommon() );
-    metrics.get( UNCOMMON ).add( id, card.getUncommon() );
-    metrics.get( RARE ).add( id, card.getRare() );
-    metrics.get( MYTHIC ).add( id, card.getMythic() );
-    metrics.get( WEIGHT ).add( id, card.getTotalWeight() );
+    track( card );
+  }
+
+  /**
+   * Adds the cards with one bulk update of the indexes.
+   */
+  public void addCards( Collection<Card> cards ) {
+    this.cards.addAll( cards );
+    for( Card card: cards ) {
+      track( card );
+    }
   }
 
   public void addCards( Iterable<Card> cards ) {
@@ -224,11 +220,30 @@ public class Stack {
     }
   }
 
+  private void track( Card card ) {
+    if( !positions.containsKey( card.id ) ) {
+      positions.put( card.id, members.size() );
+      members.add( card );
+    }
+    dups.put( card.definition.cid, card.id );
+    for( Metric metric: columns ) {
+      metric.add( card );
+    }
+  }
+
   public void delCard( Card card ) {
     cards.remove( card );
-    dups.removeMapping( card.cid, card.id );
-    for( String metric : METRICS ) {
-      metrics.get( metric ).del( card.id );
+    Integer i = positions.remove( card.id );
+    if( i != null ) {
+      Card last = members.remove( members.size() - 1 );
+      if( i < members.size() ) {
+        members.set( i, last );
+        positions.put( last.id, i );
+      }
+    }
+    dups.removeMapping( card.definition.cid, card.id );
+    for( Metric metric: columns ) {
+      metric.del( card );
     }
   }
 
@@ -45,6 +45,15 @@ public class Utils {
     return q;
   }
 
+  /**
+   * Scrambles the bits of a value so nearby values give unrelated results (the SplitMix64 finalizer).
+   */
+  public static long mix( long z ) {
+    z = ( z ^ ( z >>> 30 ) ) * 0xbf58476d1ce4e5b9L;
+    z = ( z ^ ( z >>> 27 ) ) * 0x94d049bb133111ebL;
+    return z ^ ( z >>> 31 );
+  }
+
   static int parseInt( String s, int d ) {
     int n = d;
     try {
@@ -55,6 +64,35 @@ public class Utils {
     return n;
   }
 
+  /**
+   * Parses a duration such as 500ms, 30s, 5m or 2h into milliseconds.  A bare number is in seconds.
+   */
+  public static long parseDuration( String s, long d ) {
+    long n = d;
+    if( s != null ) {
+      String t = s.trim().toLowerCase();
+      long unit = 1000L;
+      if( t.endsWith( "ms" ) ) {
+        unit = 1L;
+        t = t.substring( 0, t.length() - 2 );
+      } else if( t.endsWith( "s" ) ) {
+        t = t.substring( 0, t.length() - 1 );
+      } else if( t.endsWith( "m" ) ) {
+        unit = 60L * 1000L;
+        t = t.substring( 0, t.length() - 1 );
+      } else if( t.endsWith( "h" ) ) {
+        unit = 60L * 60L * 1000L;
+        t = t.substring( 0, t.length() - 1 );
+      }
+      try {
+        n = Math.round( Double.parseDouble( t.trim() ) * unit );
+      } catch ( NumberFormatException e ) {
+        // Ignore it and use the default.
+      }
+    }
+    return n;
+  }
+
   public static double parseDbl( String s, double d ) {
     double n = d;
     try {
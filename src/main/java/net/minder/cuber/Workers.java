@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.minder.cuber;
+
+import org.uncommons.maths.random.MersenneTwisterRNG;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A fixed pool of worker threads used to deal, mutate and score candidates in parallel.
+ * Work is always split into the same number of chunks and each chunk gets its own random number generator seeded
+ * from the caller's, so the random choices made for a given seed do not depend on how the chunks are scheduled.
+ * The mutator's operator scheduler is credited by measured run time, so which operators are picked, and through
+ * them the result, can still vary between runs with the same seed.
+ */
+public class Workers {
+
+  private static final int SEED_BYTES = 16;
+
+  private int threads;
+  private ExecutorService executor;
+
+  public Workers( int threads ) {
+    this.threads = Math.max( 1, threads );
+    this.executor = Executors.newFixedThreadPool( this.threads, new ThreadFactory() {
+      private int count = 0;
+      public synchronized Thread newThread( Runnable runnable ) {
+        Thread thread = new Thread( runnable, String.format( "cuber-worker-%02d", ++count ) );
+        thread.setDaemon( true );
+        return thread;
+      }
+    } );
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  public boolean isParallel() {
+    return threads > 1;
+  }
+
+  /**
+   * Creates one independent random number generator per worker chunk, seeded from the given generator.
+   */
+  public Random[] split( Random random ) {
+    Random[] streams = new Random[ threads ];
+    for( int i=0; i<threads; i++ ) {
+      byte[] seed = new byte[ SEED_BYTES ];
+      random.nextBytes( seed );
+      streams[ i ] = new MersenneTwisterRNG( seed );
+    }
+    return streams;
+  }
+
+  public <T> List<T> invoke( List<Callable<T>> tasks ) {
+    List<T> results = new ArrayList<T>( tasks.size() );
+    try {
+      for( Future<T> future: executor.invokeAll( tasks ) ) {
+        results.add( future.get() );
+      }
+    } catch( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException( "Interrupted waiting for workers.", e );
+    } catch( ExecutionException e ) {
+      Throwable cause = e.getCause();
+      if( cause instanceof RuntimeException ) {
+        throw (RuntimeException)cause;
+      }
+      throw new IllegalStateException( cause );
+    }
+    return results;
+  }
+
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+}
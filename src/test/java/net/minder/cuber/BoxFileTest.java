@@ -0,0 +1,84 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.minder.cuber;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BoxFileTest {
+
+  private static final File TSV = new File( "origins.tsv" );
+
+  @Test
+  public void testCompiledRowsMatchTsv() throws IOException {
+    File file = compile();
+    assertTrue( BoxFile.isCompiled( file ) );
+    assertFalse( BoxFile.isCompiled( TSV ) );
+    List<String> rows = read( TSV, null, null );
+    assertTrue( rows.size() > 0 );
+    assertEquals( rows, read( file, null, null ) );
+  }
+
+  @Test
+  public void testCompiledRowsMatchTsvFiltered() throws IOException {
+    File file = compile();
+    Set<String> sets = Collections.singleton( "ORI" );
+    Set<String> types = new HashSet<String>( Arrays.asList( "C", "I" ) );
+    List<String> rows = read( TSV, sets, types );
+    assertTrue( rows.size() > 0 );
+    assertEquals( rows, read( file, sets, types ) );
+  }
+
+  private static File compile() throws IOException {
+    File file = File.createTempFile( "origins", ".cbx" );
+    file.deleteOnExit();
+    BoxFile.compile( Collections.singletonList( TSV ), file );
+    return file;
+  }
+
+  // Each row as its text columns, copy count and values.  The count column's text is not kept by compiled files.
+  static List<String> read( File file, Set<String> sets, Set<String> types ) throws IOException {
+    final List<String> rows = new ArrayList<String>();
+    Box.read( file, sets, types, new Box.RowSink() {
+      public void row( String[] columns, int count, double[] values ) {
+        StringBuilder row = new StringBuilder();
+        for( int c=0; c<Box.COLUMN_TOTAL; c++ ) {
+          if( c != Box.COLUMN_COUNT ) {
+            row.append( columns[ c ] ).append( '\t' );
+          }
+        }
+        row.append( count ).append( '\t' ).append( Arrays.toString( values ) );
+        rows.add( row.toString() );
+      }
+    } );
+    return rows;
+  }
+
+}
@@ -0,0 +1,139 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.minder.cuber;
+
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BoxParserTest {
+
+  private static final File TSV = new File( "origins.tsv" );
+
+  @Test
+  public void testMatchesSplitParse() throws IOException {
+    assertParsed( split( TSV ), TSV );
+  }
+
+  @Test
+  public void testLineEnds() throws IOException {
+    List<String[]> rows = split( TSV );
+    for( boolean crlf: new boolean[]{ false, true } ) {
+      File file = File.createTempFile( "origins", ".tsv" );
+      file.deleteOnExit();
+      copy( TSV, file, crlf );
+      assertParsed( rows, file );
+    }
+  }
+
+  @Test
+  public void testGzip() throws IOException {
+    File file = File.createTempFile( "origins", ".tsv.gz" );
+    file.deleteOnExit();
+    copy( TSV, new GZIPOutputStream( new FileOutputStream( file ) ), true );
+    assertParsed( split( TSV ), file );
+  }
+
+  // The rows as the loader read them before the parser, by splitting each line at tabs.
+  private static List<String[]> split( File file ) throws IOException {
+    List<String[]> rows = new ArrayList<String[]>();
+    BufferedReader reader = new BufferedReader( new FileReader( file ) );
+    try {
+      String line;
+      while( ( line = reader.readLine() ) != null ) {
+        if( !line.isEmpty() && !line.startsWith( "Name" ) ) {
+          String[] columns = Arrays.copyOf( line.split( "\t" ), Box.COLUMN_TOTAL );
+          if( columns[ Box.COLUMN_COUNT ] == null ) {
+            columns[ Box.COLUMN_COUNT ] = "1";
+          }
+          if( columns[ Box.COLUMN_SOURCES ] == null ) {
+            columns[ Box.COLUMN_SOURCES ] = "";
+          }
+          rows.add( columns );
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return rows;
+  }
+
+  private static void assertParsed( List<String[]> rows, File file ) throws IOException {
+    assertTrue( rows.size() > 0 );
+    BoxParser parser = BoxParser.open( file );
+    try {
+      for( String[] columns: rows ) {
+        assertTrue( parser.next() );
+        for( int c=0; c<Box.COLUMN_TOTAL; c++ ) {
+          if( c == Box.COLUMN_COUNT ) {
+            assertEquals( Utils.parseInt( columns[ c ], 0 ), parser.getInt( c, 1 ) );
+          } else {
+            assertEquals( columns[ c ], parser.getString( c ) );
+          }
+        }
+        assertEquals( columns[ Box.COLUMN_NAME ], parser.getText( Box.COLUMN_NAME ) );
+        for( int c: Box.VALUE_COLUMNS ) {
+          assertEquals( Catalog.parseValue( columns[ c ] ), parser.getDouble( c ), 0.0d );
+        }
+      }
+      assertFalse( parser.next() );
+    } finally {
+      parser.close();
+    }
+  }
+
+  // Copies the file with every line ended by either a new line or a carriage return and new line.
+  static void copy( File from, File to, boolean crlf ) throws IOException {
+    copy( from, new FileOutputStream( to ), crlf );
+  }
+
+  static void copy( File from, OutputStream out, boolean crlf ) throws IOException {
+    InputStream in = new BufferedInputStream( new FileInputStream( from ) );
+    try {
+      int b;
+      while( ( b = in.read() ) >= 0 ) {
+        if( b == '\n' && crlf ) {
+          out.write( '\r' );
+        }
+        if( b != '\r' ) {
+          out.write( b );
+        }
+      }
+    } finally {
+      in.close();
+      out.close();
+    }
+  }
+
+}
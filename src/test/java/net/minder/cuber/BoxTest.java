@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.minder.cuber;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BoxTest {
+
+  private static final File TSV = new File( "origins.tsv" );
+  private static final File CONFIG = new File( "origins.cfg" );
+
+  @Test
+  public void testFilterWhileLoadingMatchesFilterAfter() throws IOException {
+    Config config = Config.load( CONFIG );
+    List<String> expected = getIds( Box.load( TSV ).getCards( config.getCardFilter() ) );
+    assertTrue( expected.size() > 0 );
+    assertTrue( expected.size() < Box.load( TSV ).getCount() );
+
+    Box box = new Box( config.getName() );
+    Box.load( TSV, box, config.getSets(), config.getTypes() );
+    assertEquals( expected, getIds( box.getCards() ) );
+
+    File compiled = File.createTempFile( "origins", ".cbx" );
+    compiled.deleteOnExit();
+    BoxFile.compile( Collections.singletonList( TSV ), compiled );
+    box = new Box( config.getName() );
+    Box.load( compiled, box, config.getSets(), config.getTypes() );
+    assertEquals( expected, getIds( box.getCards() ) );
+  }
+
+  @Test
+  public void testParallelLoadMatchesSequential() throws IOException {
+    Config config = Config.load( CONFIG );
+    File gzip = File.createTempFile( "origins", ".tsv.gz" );
+    gzip.deleteOnExit();
+    BoxParserTest.copy( TSV, new GZIPOutputStream( new FileOutputStream( gzip ) ), false );
+    File compiled = File.createTempFile( "origins", ".cbx" );
+    compiled.deleteOnExit();
+    BoxFile.compile( Collections.singletonList( TSV ), compiled );
+    List<File> files = Arrays.asList( TSV, gzip, compiled );
+
+    Box sequential = new Box( config.getName() );
+    Box.load( files, sequential, config.getSets(), config.getTypes(), null );
+    Box parallel = new Box( config.getName() );
+    Workers workers = new Workers( 3 );
+    try {
+      Box.load( files, parallel, config.getSets(), config.getTypes(), workers );
+    } finally {
+      workers.shutdown();
+    }
+    List<Card> expected = sequential.getCardList();
+    List<Card> actual = parallel.getCardList();
+    assertTrue( expected.size() > 0 );
+    assertEquals( expected.size(), actual.size() );
+    for( int i=0; i<expected.size(); i++ ) {
+      assertEquals( expected.get( i ).id, actual.get( i ).id );
+      assertEquals( expected.get( i ).source, actual.get( i ).source );
+      for( int c=0; c<Catalog.COLUMN_COUNT; c++ ) {
+        assertEquals( expected.get( i ).getValue( c ), actual.get( i ).getValue( c ), 0.0d );
+      }
+    }
+  }
+
+  static List<String> getIds( Iterable<Card> cards ) {
+    List<String> ids = new ArrayList<String>();
+    for( Card card: cards ) {
+      ids.add( card.id );
+    }
+    Collections.sort( ids );
+    return ids;
+  }
+
+}
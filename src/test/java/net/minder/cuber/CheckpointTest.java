@@ -0,0 +1,69 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.minder.cuber;
+
+import org.junit.Test;
+import org.uncommons.maths.random.MersenneTwisterRNG;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class CheckpointTest {
+
+  private static final int CANDIDATES = 5;
+
+  @Test
+  public void testWriteReadRoundTrip() throws IOException {
+    DraftFactory factory = DraftFitnessTest.createFactory();
+    Random random = new MersenneTwisterRNG( new byte[ 16 ] );
+    DraftMutator mutator = new DraftMutator();
+    List<Draft> drafts = new ArrayList<Draft>();
+    Draft draft = factory.generateRandomCandidate( random );
+    for( int i=0; i<CANDIDATES; i++ ) {
+      draft = mutator.apply( draft, random );
+      drafts.add( draft );
+    }
+    Config config = draft.getConfig();
+
+    File file = File.createTempFile( "cuber", ".checkpoint" );
+    file.deleteOnExit();
+    new Checkpoint( config, random, 42L, drafts ).write( file );
+    long next = random.nextLong();
+
+    Checkpoint checkpoint = Checkpoint.read( file );
+    assertEquals( 42L, checkpoint.getGeneration() );
+    assertEquals( CANDIDATES, checkpoint.getCandidateCount() );
+    assertEquals( config.getPackCount(), checkpoint.getConfig().getPackCount() );
+    assertEquals( next, checkpoint.getRandom().nextLong() );
+    List<Draft> restored = checkpoint.getDrafts(
+        draft.getName(), checkpoint.getConfig(), factory.getInventory(), new Random( 1 ) );
+    assertEquals( CANDIDATES, restored.size() );
+    for( int i=0; i<CANDIDATES; i++ ) {
+      assertArrayEquals( DraftTest.getAssignment( drafts.get( i ) ), DraftTest.getAssignment( restored.get( i ) ) );
+      assertEquals( drafts.get( i ).getHash(), restored.get( i ).getHash() );
+      assertEquals( drafts.get( i ).getFitness().getAggregate(), restored.get( i ).getFitness().getAggregate(), 1.0e-9d );
+    }
+  }
+
+}
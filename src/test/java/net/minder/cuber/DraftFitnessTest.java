@@ -0,0 +1,64 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.minder.cuber;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class DraftFitnessTest {
+
+  private static final int SWAPS = 2000;
+  private static final double DELTA = 1.0e-9d;
+
+  static DraftFactory createFactory() throws IOException {
+    Config config = Config.load( new File( "origins.cfg" ) );
+    Box box = new Box( config.getName() );
+    Box.load( new File( "origins.tsv" ), box, config.getSets(), config.getTypes() );
+    return new DraftFactory( box.getName(), config, box );
+  }
+
+  @Test
+  public void testIncrementalUpdateMatchesRecompute() throws IOException {
+    Random random = new Random( 1 );
+    Draft draft = createFactory().generateRandomCandidate( random );
+    draft.setFitness( new DraftFitness( draft ) );
+    for( int k=0; k<SWAPS; k++ ) {
+      Pack pack = draft.getPack( random.nextInt( draft.getPackCount() ) );
+      if( random.nextBoolean() ) {
+        Card poolCard = draft.getPool().draw( random );
+        draft.swapCards( pack, pack.getRandomCard( random ), poolCard );
+      } else {
+        Pack other = draft.getPack( random.nextInt( draft.getPackCount() ) );
+        draft.swapPackCards( pack, pack.getRandomCard( random ), other, other.getRandomCard( random ) );
+      }
+    }
+    DraftFitness incremental = draft.getFitness();
+    DraftFitness recomputed = new DraftFitness( draft );
+    assertEquals( recomputed.getAggregate(), incremental.getAggregate(), DELTA );
+    assertEquals( recomputed.getLowerBound(), incremental.getLowerBound(), DELTA );
+    for( int p=0; p<draft.getPackCount(); p++ ) {
+      assertEquals( recomputed.getImbalance( p ), incremental.getImbalance( p ), DELTA );
+    }
+  }
+
+}
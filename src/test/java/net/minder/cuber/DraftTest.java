@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.minder.cuber;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class DraftTest {
+
+  private static final int SWAPS = 2000;
+
+  @Test
+  public void testCopyIsIndependent() throws IOException {
+    Random random = new Random( 2 );
+    Draft draft = DraftFitnessTest.createFactory().generateRandomCandidate( random );
+    draft.setFitness( new DraftFitness( draft ) );
+    int[] assignment = getAssignment( draft );
+    int poolSize = draft.getPool().getSize();
+    long hash = draft.getHash();
+    double aggregate = draft.getFitness().getAggregate();
+    Draft copy = draft.copy();
+    for( int k=0; k<SWAPS; k++ ) {
+      Pack pack = copy.getPack( random.nextInt( copy.getPackCount() ) );
+      copy.swapCards( pack, pack.getRandomCard( random ), copy.getPool().draw( random ) );
+    }
+    assertArrayEquals( assignment, getAssignment( draft ) );
+    for( int i=0; i<assignment.length; i++ ) {
+      assertEquals( assignment[ i ] == Draft.POOL, draft.getPool().contains( i ) );
+    }
+    assertEquals( poolSize, draft.getPool().getSize() );
+    assertEquals( hash, draft.getHash() );
+    assertEquals( aggregate, draft.getFitness().getAggregate(), 0.0d );
+    Draft rebuilt = new Draft( copy.getName(), copy.getConfig(), copy.getInventory(), random, getAssignment( copy ) );
+    assertEquals( rebuilt.getHash(), copy.getHash() );
+  }
+
+  @Test
+  public void testHashIgnoresSwapOrder() throws IOException {
+    Random random = new Random( 3 );
+    Draft draft = DraftFitnessTest.createFactory().generateRandomCandidate( random );
+    long hash = draft.getHash();
+    Pack p = draft.getPack( 0 );
+    Pack q = draft.getPack( 1 );
+    Card a = p.getCard( 0 );
+    Card b = q.getCard( 0 );
+    Card x = draft.getPool().draw( random );
+    Card y = x;
+    while( y == x ) {
+      y = draft.getPool().draw( random );
+    }
+
+    Draft first = draft.copy();
+    first.swapCards( first.getPack( 0 ), a, x );
+    first.swapCards( first.getPack( 1 ), b, y );
+    Draft second = draft.copy();
+    second.swapCards( second.getPack( 1 ), b, y );
+    second.swapCards( second.getPack( 0 ), a, x );
+    assertEquals( first.getHash(), second.getHash() );
+    assertFalse( first.getHash() == hash );
+
+    // The same deal reached by exchanges between packs, or rebuilt from scratch, hashes the same too.
+    Draft third = draft.copy();
+    third.swapPackCards( third.getPack( 0 ), a, third.getPack( 1 ), b );
+    third.swapCards( third.getPack( 0 ), b, x );
+    third.swapCards( third.getPack( 1 ), a, y );
+    assertEquals( first.getHash(), third.getHash() );
+    Draft rebuilt = new Draft( draft.getName(), draft.getConfig(), draft.getInventory(), random, getAssignment( first ) );
+    assertEquals( first.getHash(), rebuilt.getHash() );
+
+    first.swapCards( first.getPack( 1 ), y, b );
+    first.swapCards( first.getPack( 0 ), x, a );
+    assertEquals( hash, first.getHash() );
+  }
+
+  @Test
+  public void testCopyFrom() throws IOException {
+    Random random = new Random( 4 );
+    Draft draft = DraftFitnessTest.createFactory().generateRandomCandidate( random );
+    draft.setFitness( new DraftFitness( draft ) );
+    Draft buffer = draft.copy();
+    for( int round=0; round<10; round++ ) {
+      for( int k=0; k<SWAPS / 10; k++ ) {
+        Pack pack = draft.getPack( random.nextInt( draft.getPackCount() ) );
+        draft.swapCards( pack, pack.getRandomCard( random ), draft.getPool().draw( random ) );
+      }
+      buffer.copyFrom( draft );
+      int[] assignment = getAssignment( draft );
+      assertArrayEquals( assignment, getAssignment( buffer ) );
+      for( int i=0; i<assignment.length; i++ ) {
+        assertEquals( assignment[ i ] == Draft.POOL, buffer.getPool().contains( i ) );
+      }
+      assertEquals( draft.getHash(), buffer.getHash() );
+      assertEquals( draft.getFitness().getAggregate(), buffer.getFitness().getAggregate(), 0.0d );
+      // Changing the source afterwards leaves the buffer as it was.
+      Pack pack = draft.getPack( 0 );
+      draft.swapCards( pack, pack.getRandomCard( random ), draft.getPool().draw( random ) );
+      assertArrayEquals( assignment, getAssignment( buffer ) );
+      assertEquals( new Draft( buffer.getName(), buffer.getConfig(), buffer.getInventory(), random, assignment ).getHash(),
+          buffer.getHash() );
+    }
+  }
+
+  @Test
+  public void testGreedySeedIgnoresRowOrder() throws IOException {
+    Config config = Config.load( new File( "origins.cfg" ) );
+    Box box = new Box( config.getName() );
+    Box.load( new File( "origins.tsv" ), box, config.getSets(), config.getTypes() );
+    List<Card> reversed = new ArrayList<Card>( box.getCards() );
+    Collections.reverse( reversed );
+    Inventory forward = new Inventory( box );
+    Inventory backward = new Inventory( box.getName(), box.getCatalog(), reversed );
+    Draft first = new Draft( box.getName(), config, forward, new Random( 5 ), false );
+    Draft second = new Draft( box.getName(), config, backward, new Random( 6 ), false );
+    assertEquals( first.getHash(), second.getHash() );
+  }
+
+  static int[] getAssignment( Draft draft ) {
+    int[] assignment = new int[ draft.getInventory().getSize() ];
+    for( int i=0; i<assignment.length; i++ ) {
+      assignment[ i ] = draft.getAssignment( i );
+    }
+    return assignment;
+  }
+
+}